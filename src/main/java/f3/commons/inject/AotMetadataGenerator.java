@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Build-time task which binds classes and writes its resolved binds and native-image reflection metadata.
+ * Arguments: output directory and names of classes to bind.
+ * Output directory receives reflect-config.json and resolved-binds, which is loaded at run time by
+ * {@link FrozenInjector#readResolvedBinds(java.io.Reader, ClassLoader, IInjectorListener)}.
+ * @author n3k0nation
+ *
+ */
+public final class AotMetadataGenerator {
+	public final static String REFLECT_CONFIG = "reflect-config.json";
+	public final static String RESOLVED_BINDS = "resolved-binds";
+	
+	private AotMetadataGenerator() {
+	}
+	
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		if(args.length < 2) {
+			System.err.println("Usage: AotMetadataGenerator <output directory> <class>...");
+			System.exit(1);
+		}
+		
+		final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		final List<Class<?>> classes = new ArrayList<>();
+		for(int i = 1; i < args.length; i++) {
+			classes.add(Class.forName(args[i], false, loader));
+		}
+		
+		final Injector injector = new Injector();
+		injector.autoBind(classes);
+		generate(injector, Paths.get(args[0]));
+	}
+	
+	/**
+	 * Writes resolved binds and reflection metadata of injector to directory.
+	 */
+	public static void generate(Injector injector, Path directory) throws IOException {
+		Files.createDirectories(directory);
+		try(Writer writer = new OutputStreamWriter(Files.newOutputStream(directory.resolve(REFLECT_CONFIG)), StandardCharsets.UTF_8)) {
+			injector.getReflectionConfig().write(writer);
+		}
+		
+		try(Writer writer = new OutputStreamWriter(Files.newOutputStream(directory.resolve(RESOLVED_BINDS)), StandardCharsets.UTF_8)) {
+			injector.freeze().writeResolvedBinds(writer);
+		}
+	}
+}
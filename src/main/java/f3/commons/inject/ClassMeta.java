@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import f3.commons.reflection.FieldUtils;
+
+/**
+ * Cached reflection metadata of class, resolved once per class for whole process and shared by all injectors.
+ * Reflection getters copy arrays on each call, so repeated binds of same class reuse this snapshot instead.
+ * @author n3k0nation
+ *
+ */
+final class ClassMeta {
+	private final static ClassValue<ClassMeta> cache = new ClassValue<ClassMeta>() {
+		@Override
+		protected ClassMeta computeValue(Class<?> type) {
+			return create(type);
+		}
+	};
+	
+	/** class itself, declared methods and declared fields which have scope annotations */
+	private final Object[] scopedMembers;
+	/** scope annotations (or its repeatable containers) of scoped member with same index */
+	private final Annotation[][] scopes;
+	private final Field[] injectFields;
+	/** null if class haven't {@link Inject} constructor */
+	private final Constructor<?> injectConstructor;
+	
+	private ClassMeta(Object[] scopedMembers, Annotation[][] scopes, Field[] injectFields, Constructor<?> injectConstructor) {
+		this.scopedMembers = scopedMembers;
+		this.scopes = scopes;
+		this.injectFields = injectFields;
+		this.injectConstructor = injectConstructor;
+	}
+	
+	static ClassMeta of(Class<?> type) {
+		return cache.get(type);
+	}
+	
+	int getScopedCount() {
+		return scopedMembers.length;
+	}
+	
+	/**
+	 * @return class, method or field
+	 */
+	Object getScopedMember(int index) {
+		return scopedMembers[index];
+	}
+	
+	Annotation[] getScopes(int index) {
+		return scopes[index];
+	}
+	
+	/**
+	 * @return accessible {@link Inject} fields, array is shared and must not be changed
+	 */
+	Field[] getInjectFields() {
+		return injectFields;
+	}
+	
+	Constructor<?> getInjectConstructor() {
+		return injectConstructor;
+	}
+	
+	private static ClassMeta create(Class<?> type) {
+		final List<Object> members = new ArrayList<>();
+		final List<Annotation[]> annotations = new ArrayList<>();
+		addScoped(type, type.getAnnotations(), members, annotations);
+		
+		final Method[] methods = type.getDeclaredMethods();
+		for(int i = 0; i < methods.length; i++) {
+			addScoped(methods[i], methods[i].getAnnotations(), members, annotations);
+		}
+		
+		final Field[] fields = type.getDeclaredFields();
+		for(int i = 0; i < fields.length; i++) {
+			addScoped(fields[i], fields[i].getAnnotations(), members, annotations);
+		}
+		
+		final List<Field> injectFields = FieldUtils.getAnnotatedField(type, Inject.class);
+		for(int i = 0; i < injectFields.size(); i++) {
+			injectFields.get(i).setAccessible(true);
+		}
+		
+		Constructor<?> injectConstructor = null;
+		final Constructor<?>[] constructors = type.getDeclaredConstructors();
+		for(int i = 0; i < constructors.length; i++) {
+			if(constructors[i].isAnnotationPresent(Inject.class)) {
+				injectConstructor = constructors[i];
+				break;
+			}
+		}
+		
+		return new ClassMeta(members.toArray(), annotations.toArray(new Annotation[annotations.size()][]),
+				injectFields.toArray(new Field[injectFields.size()]), injectConstructor);
+	}
+	
+	private static void addScoped(Object member, Annotation[] memberAnnotations, List<Object> members, List<Annotation[]> annotations) {
+		int count = 0;
+		for(int i = 0; i < memberAnnotations.length; i++) {
+			final ScopeMeta meta = ScopeMeta.of(memberAnnotations[i].annotationType());
+			if(meta.isScope() || meta.isRepeatable()) {
+				memberAnnotations[count++] = memberAnnotations[i];
+			}
+		}
+		
+		if(count == 0) {
+			return;
+		}
+		
+		final Annotation[] scoped = new Annotation[count];
+		System.arraycopy(memberAnnotations, 0, scoped, 0, count);
+		members.add(member);
+		annotations.add(scoped);
+	}
+}
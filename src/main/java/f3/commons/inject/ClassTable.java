@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable open-addressed table with class keys compared by identity.
+ * @author n3k0nation
+ *
+ */
+final class ClassTable<V> {
+	private final Class<?>[] keys;
+	private final Object[] values;
+	private final int mask;
+	
+	ClassTable(Map<Class<?>, ? extends V> map) {
+		int capacity = 2;
+		while(capacity < map.size() * 2) { //load factor 0.5 keeps probe sequences short
+			capacity <<= 1;
+		}
+		
+		keys = new Class<?>[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		
+		for(Map.Entry<Class<?>, ? extends V> entry : map.entrySet()) {
+			int index = hash(entry.getKey()) & mask;
+			while(keys[index] != null) {
+				index = (index + 1) & mask;
+			}
+			keys[index] = entry.getKey();
+			values[index] = entry.getValue();
+		}
+	}
+	
+	private static int hash(Class<?> key) {
+		final int h = System.identityHashCode(key) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	@SuppressWarnings("unchecked")
+	void forEach(BiConsumer<Class<?>, V> action) {
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != null) {
+				action.accept(keys[i], (V) values[i]);
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	V get(Class<?> key) {
+		int index = hash(key) & mask;
+		Class<?> probe;
+		while((probe = keys[index]) != null) {
+			if(probe == key) {
+				return (V) values[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+}
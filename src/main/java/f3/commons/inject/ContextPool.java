@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.reflect.Field;
+
+/**
+ * Per thread stack of reusable provider contexts, one context for each nested inject depth.
+ * @author n3k0nation
+ *
+ */
+final class ContextPool {
+	private final static ThreadLocal<ContextPool> pools = ThreadLocal.withInitial(ContextPool::new);
+	
+	private ProviderContext[] contexts = new ProviderContext[16];
+	private int depth;
+	
+	static ContextPool get() {
+		return pools.get();
+	}
+	
+	ProviderContext acquire(Field target, Object targetInstance, IInjector injector) {
+		if(depth == contexts.length) {
+			final ProviderContext[] grown = new ProviderContext[contexts.length << 1];
+			System.arraycopy(contexts, 0, grown, 0, contexts.length);
+			contexts = grown;
+		}
+		
+		ProviderContext context = contexts[depth];
+		if(context == null) {
+			contexts[depth] = context = new ProviderContext(target, targetInstance, injector);
+		} else {
+			context.setTarget(target);
+			context.setTargetInstance(targetInstance);
+			context.setInjector(injector);
+		}
+		depth++;
+		return context;
+	}
+	
+	void release() {
+		final ProviderContext context = contexts[--depth];
+		context.setTarget(null); //don't hold injected instances
+		context.setTargetInstance(null);
+		context.setInjector(null);
+	}
+}
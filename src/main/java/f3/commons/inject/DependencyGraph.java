@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.DefaultProvider;
+import f3.commons.inject.providers.LazyProvider;
+import f3.commons.inject.providers.MultiProvider;
+import f3.commons.inject.providers.SingletonProvider;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Snapshot of resolved binds of {@link Injector} as graph: nodes are inject classes, edges are inject points with its providers.
+ * Graph is analyzed for cycles, unused providers, inject depth and instantiations count, and can be exported to DOT or JSON.
+ *
+ * Values returned for cycled graphs are {@link #UNBOUNDED}.
+ * Depth and instantiations are estimated for steady state: singletons already created and injected, deferred depends not requested, static fields already injected.
+ * @author n3k0nation
+ *
+ */
+public class DependencyGraph {
+	public final static int UNBOUNDED = -1;
+	
+	/**
+	 * Inject point of class (field or constructor parameter) with its resolved provider.
+	 */
+	@RequiredArgsConstructor
+	@Getter
+	public static class Dependency {
+		private final Class<?> owner;
+		/** field name or constructor parameter name */
+		private final String point;
+		private final boolean isConstructor;
+		/** static field, injected once per class and not on inject of instance */
+		private final boolean isStatic;
+		private final AbstractProvider provider;
+		/** class which binds applies to provided depend, null if unknown */
+		private final Class<?> depend;
+		/** provider gives handle, depend is not created on inject */
+		private final boolean isDeferred;
+		/** provider returns same instance for all injects */
+		private final boolean isShared;
+		/** objects created by provider on each provide */
+		private final int instantiations;
+	}
+	
+	private final Map<Class<?>, List<Dependency>> dependencies = new LinkedHashMap<>();
+	private final List<AbstractProvider> unreachableProviders = new ArrayList<>();
+	private final Set<Class<?>> cycled = new LinkedHashSet<>();
+	private final List<List<Class<?>>> cycles = new ArrayList<>();
+	private final Map<Class<?>, Integer> depths = new HashMap<>();
+	private final Map<Class<?>, Long> instantiations = new HashMap<>();
+	
+	DependencyGraph() {
+	}
+	
+	void addDependency(Class<?> owner, String point, boolean isConstructor, boolean isStatic, AbstractProvider provider) {
+		if(provider instanceof MultiProvider) { //each implementation is own edge
+			final AbstractProvider[] elements = ((MultiProvider) provider).getElements();
+			final Object[] keys = ((MultiProvider) provider).getKeys();
+			getDependencies(owner);
+			for(int i = 0; i < elements.length; i++) {
+				addDependency(owner, point + "[" + (keys == null ? i : keys[i]) + "]", isConstructor, isStatic, elements[i]);
+			}
+			return;
+		}
+		
+		final boolean isDeferred = provider instanceof LazyProvider;
+		final AbstractProvider endPoint = getEndPoint(provider);
+		
+		final Class<?> depend;
+		int count = 0;
+		if(endPoint.isClassDepend()) {
+			depend = endPoint.getClassDepend();
+			count = 1;
+		} else if(endPoint.isMethodDepend()) { //declaring class instance is created once by provider
+			depend = endPoint.getMethodDepend().getReturnType();
+			count = 1;
+		} else if(endPoint.isFieldDepend()) {
+			depend = endPoint.getFieldDepend().getType();
+		} else {
+			depend = null;
+		}
+		
+		final boolean isShared = endPoint instanceof SingletonProvider;
+		if(isDeferred || isShared) {
+			count = 0;
+		}
+		
+		getDependencies(owner); //register node
+		if(depend != null) {
+			getDependencies(depend);
+		}
+		dependencies.get(owner).add(new Dependency(owner, point, isConstructor, isStatic, provider, depend, isDeferred, isShared, count));
+	}
+	
+	void analyze(List<AbstractProvider> scannedProviders) {
+		final Map<AbstractProvider, Boolean> used = new IdentityHashMap<>();
+		for(List<Dependency> list : dependencies.values()) {
+			for(int i = 0; i < list.size(); i++) {
+				AbstractProvider provider = list.get(i).getProvider();
+				if(provider instanceof LazyProvider) {
+					provider = ((LazyProvider) provider).getProvider();
+				}
+				used.put(provider, Boolean.TRUE);
+				
+				final AbstractProvider endPoint = getEndPoint(provider);
+				if(endPoint instanceof DefaultProvider && ((DefaultProvider) endPoint).getModule() != null) { //module creates declaring instance
+					used.put(((DefaultProvider) endPoint).getModule(), Boolean.TRUE);
+				}
+			}
+		}
+		
+		for(int i = 0; i < scannedProviders.size(); i++) {
+			final AbstractProvider provider = scannedProviders.get(i);
+			if(!used.containsKey(provider) && !used.containsKey(provider.flatten())) { //multi providers hold flattened chains
+				unreachableProviders.add(provider);
+			}
+		}
+		
+		findCycles();
+		for(Class<?> node : dependencies.keySet()) {
+			computeDepth(node);
+			computeInstantiations(node, false);
+		}
+	}
+	
+	private static AbstractProvider getEndPoint(AbstractProvider provider) {
+		if(provider instanceof LazyProvider) {
+			provider = ((LazyProvider) provider).getProvider();
+		}
+		
+		while(provider.getNext() != null) {
+			provider = provider.getNext();
+		}
+		return provider;
+	}
+	
+	/** Tarjan SCC over not deferred, not shared and not static edges, other edges doesn't recurse inject */
+	private void findCycles() {
+		final Map<Class<?>, Integer> index = new HashMap<>();
+		final Map<Class<?>, Integer> lowLink = new HashMap<>();
+		final Deque<Class<?>> stack = new ArrayDeque<>();
+		final Set<Class<?>> onStack = new LinkedHashSet<>();
+		for(Class<?> node : dependencies.keySet()) {
+			if(!index.containsKey(node)) {
+				strongConnect(node, index, lowLink, stack, onStack);
+			}
+		}
+	}
+	
+	private void strongConnect(Class<?> node, Map<Class<?>, Integer> index, Map<Class<?>, Integer> lowLink,
+			Deque<Class<?>> stack, Set<Class<?>> onStack) {
+		index.put(node, index.size());
+		lowLink.put(node, index.get(node));
+		stack.push(node);
+		onStack.add(node);
+		
+		boolean isSelfLoop = false;
+		final List<Dependency> list = getDependencies(node);
+		for(int i = 0; i < list.size(); i++) {
+			final Dependency dependency = list.get(i);
+			final Class<?> depend = dependency.getDepend();
+			if(dependency.isDeferred() || dependency.isShared() || dependency.isStatic() || depend == null) {
+				continue;
+			}
+			
+			if(depend == node) {
+				isSelfLoop = true;
+			}
+			
+			if(!index.containsKey(depend)) {
+				strongConnect(depend, index, lowLink, stack, onStack);
+				lowLink.put(node, Math.min(lowLink.get(node), lowLink.get(depend)));
+			} else if(onStack.contains(depend)) {
+				lowLink.put(node, Math.min(lowLink.get(node), index.get(depend)));
+			}
+		}
+		
+		if(!lowLink.get(node).equals(index.get(node))) {
+			return;
+		}
+		
+		final List<Class<?>> component = new ArrayList<>();
+		Class<?> member;
+		do {
+			member = stack.pop();
+			onStack.remove(member);
+			component.add(member);
+		} while(member != node);
+		
+		if(component.size() > 1 || isSelfLoop) {
+			Collections.reverse(component);
+			cycles.add(Collections.unmodifiableList(component));
+			cycled.addAll(component);
+		}
+	}
+	
+	private int computeDepth(Class<?> node) {
+		final Integer cached = depths.get(node);
+		if(cached != null) {
+			return cached;
+		}
+		
+		if(cycled.contains(node)) {
+			depths.put(node, UNBOUNDED);
+			return UNBOUNDED;
+		}
+		
+		int depth = 0;
+		final List<Dependency> list = getDependencies(node);
+		for(int i = 0; i < list.size(); i++) {
+			final Dependency dependency = list.get(i);
+			if(dependency.isStatic()) {
+				continue;
+			}
+			
+			int dependDepth = 1;
+			if(!dependency.isDeferred() && !dependency.isShared() && dependency.getDepend() != null) {
+				final int nested = computeDepth(dependency.getDepend());
+				if(nested == UNBOUNDED) {
+					depth = UNBOUNDED;
+					break;
+				}
+				dependDepth += nested;
+			}
+			depth = Math.max(depth, dependDepth);
+		}
+		
+		depths.put(node, depth);
+		return depth;
+	}
+	
+	/**
+	 * @param isCreated true if node instance created by provider, then constructor depends is created too
+	 */
+	private long computeInstantiations(Class<?> node, boolean isCreated) {
+		if(!isCreated) {
+			final Long cached = instantiations.get(node);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		
+		if(cycled.contains(node)) {
+			if(!isCreated) {
+				instantiations.put(node, (long) UNBOUNDED);
+			}
+			return UNBOUNDED;
+		}
+		
+		long count = 0;
+		final List<Dependency> list = getDependencies(node);
+		for(int i = 0; i < list.size(); i++) {
+			final Dependency dependency = list.get(i);
+			if(dependency.isStatic() || dependency.isConstructor() && !isCreated) {
+				continue;
+			}
+			
+			count += dependency.getInstantiations();
+			if(dependency.isDeferred() || dependency.isShared() || dependency.getDepend() == null) {
+				continue;
+			}
+			
+			final long nested = computeInstantiations(dependency.getDepend(), dependency.getInstantiations() > 0);
+			if(nested == UNBOUNDED) {
+				count = UNBOUNDED;
+				break;
+			}
+			count += nested;
+		}
+		
+		if(!isCreated) {
+			instantiations.put(node, count);
+		}
+		return count;
+	}
+	
+	private List<Dependency> getDependencies(Class<?> node) {
+		List<Dependency> list = dependencies.get(node);
+		if(list == null) {
+			dependencies.put(node, list = new ArrayList<>());
+		}
+		return list;
+	}
+	
+	public Set<Class<?>> getNodes() {
+		return Collections.unmodifiableSet(dependencies.keySet());
+	}
+	
+	public List<Dependency> getDependenciesOf(Class<?> node) {
+		final List<Dependency> list = dependencies.get(node);
+		return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+	}
+	
+	/**
+	 * @return providers created from scanned classes but not used by any bind
+	 */
+	public List<AbstractProvider> getUnreachableProviders() {
+		return Collections.unmodifiableList(unreachableProviders);
+	}
+	
+	/**
+	 * @return cycles of not deferred depends, each inject of cycle member leads to endless recursion.
+	 * Cycle through singleton is not reported, cyclic depends of singleton receive it while it is injected
+	 */
+	public List<List<Class<?>>> getCycles() {
+		return Collections.unmodifiableList(cycles);
+	}
+	
+	public boolean isCycled(Class<?> node) {
+		return cycled.contains(node);
+	}
+	
+	/**
+	 * @return maximum nested inject depth for instance of class or {@link #UNBOUNDED}
+	 */
+	public int getMaxDepth(Class<?> node) {
+		final Integer depth = depths.get(node);
+		return depth == null ? 0 : depth;
+	}
+	
+	/**
+	 * @return estimated count of objects created by one inject of instance of class or {@link #UNBOUNDED}
+	 */
+	public long getInstantiations(Class<?> node) {
+		final Long count = instantiations.get(node);
+		return count == null ? 0 : count;
+	}
+	
+	public String toDot() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("digraph injector {\n");
+		sb.append("\tnode [shape=box];\n");
+		for(Class<?> node : dependencies.keySet()) {
+			sb.append('\t').append(quote(node.getName()))
+				.append(" [label=").append(quote(node.getSimpleName() + "\ndepth: " + getMaxDepth(node) + ", new: " + getInstantiations(node)));
+			if(isCycled(node)) {
+				sb.append(", color=red");
+			}
+			sb.append("];\n");
+		}
+		
+		for(List<Dependency> list : dependencies.values()) {
+			for(int i = 0; i < list.size(); i++) {
+				final Dependency dependency = list.get(i);
+				if(dependency.getDepend() == null) {
+					continue;
+				}
+				
+				sb.append('\t').append(quote(dependency.getOwner().getName()))
+					.append(" -> ").append(quote(dependency.getDepend().getName()))
+					.append(" [label=").append(quote(dependency.getPoint()));
+				if(dependency.isStatic()) {
+					sb.append(", style=dotted");
+				} else if(dependency.isDeferred()) {
+					sb.append(", style=dashed");
+				} else if(dependency.isShared()) {
+					sb.append(", style=bold");
+				}
+				sb.append("];\n");
+			}
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+	
+	public String toJson() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\"nodes\":[");
+		boolean isFirst = true;
+		for(Class<?> node : dependencies.keySet()) {
+			if(!isFirst) {
+				sb.append(',');
+			}
+			isFirst = false;
+			sb.append("{\"class\":").append(quote(node.getName()))
+				.append(",\"depth\":").append(getMaxDepth(node))
+				.append(",\"instantiations\":").append(getInstantiations(node))
+				.append(",\"cycled\":").append(isCycled(node))
+				.append('}');
+		}
+		
+		sb.append("],\"edges\":[");
+		isFirst = true;
+		for(List<Dependency> list : dependencies.values()) {
+			for(int i = 0; i < list.size(); i++) {
+				final Dependency dependency = list.get(i);
+				if(!isFirst) {
+					sb.append(',');
+				}
+				isFirst = false;
+				sb.append("{\"from\":").append(quote(dependency.getOwner().getName()))
+					.append(",\"to\":").append(dependency.getDepend() == null ? "null" : quote(dependency.getDepend().getName()))
+					.append(",\"point\":").append(quote(dependency.getPoint()))
+					.append(",\"constructor\":").append(dependency.isConstructor())
+					.append(",\"static\":").append(dependency.isStatic())
+					.append(",\"provider\":").append(quote(describe(dependency.getProvider())))
+					.append(",\"deferred\":").append(dependency.isDeferred())
+					.append(",\"shared\":").append(dependency.isShared())
+					.append(",\"instantiations\":").append(dependency.getInstantiations())
+					.append('}');
+			}
+		}
+		
+		sb.append("],\"cycles\":[");
+		for(int i = 0; i < cycles.size(); i++) {
+			if(i != 0) {
+				sb.append(',');
+			}
+			sb.append('[');
+			final List<Class<?>> cycle = cycles.get(i);
+			for(int j = 0; j < cycle.size(); j++) {
+				if(j != 0) {
+					sb.append(',');
+				}
+				sb.append(quote(cycle.get(j).getName()));
+			}
+			sb.append(']');
+		}
+		
+		sb.append("],\"unreachable\":[");
+		for(int i = 0; i < unreachableProviders.size(); i++) {
+			if(i != 0) {
+				sb.append(',');
+			}
+			sb.append(quote(describe(unreachableProviders.get(i))));
+		}
+		sb.append("]}");
+		return sb.toString();
+	}
+	
+	private static String describe(AbstractProvider provider) {
+		final StringBuilder sb = new StringBuilder();
+		for(AbstractProvider p = provider; p != null; p = p instanceof LazyProvider ? ((LazyProvider) p).getProvider() : p.getNext()) {
+			if(sb.length() != 0) {
+				sb.append(" -> ");
+			}
+			sb.append(p.getClass().getSimpleName());
+			if(p instanceof DefaultProvider) {
+				sb.append('(').append(p.getDepend()).append(')');
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String quote(String value) {
+		final StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+		for(int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch(c) {
+				case '"': sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				default:
+					if(c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import f3.commons.inject.providers.ConstructorFactory;
+
+/**
+ * Immutable snapshot of {@link Injector} binds optimized for lookups.
+ * Safe for use from many threads without synchronization, providers are shared with source injector.
+ * @author n3k0nation
+ *
+ */
+public final class FrozenInjector implements IInjector {
+	/** merged plans of bound classes */
+	private final ClassTable<InjectPlan> plans;
+	/** merged plans of other runtime classes (e.g. subclasses of bound classes) */
+	private final ClassValue<InjectPlan> inheritedPlans;
+	private final ClassTable<ConstructorFactory> factories;
+	/** binds of static fields by declaring class */
+	private final Map<Class<?>, InjectPlan> staticBinds;
+	private final Function<Class<?>, InjectPlan> planLookup;
+	private final IInjectorListener listener;
+	private final int maxInjectDepth;
+	
+	/**
+	 * @param binds own binds of classes
+	 * @param staticBinds binds of static fields of classes
+	 */
+	FrozenInjector(Map<Class<?>, InjectPlan> binds, Map<Class<?>, InjectPlan> staticBinds, Map<Class<?>, ConstructorFactory> factories,
+			IInjectorListener listener, int maxInjectDepth) {
+		final Map<Class<?>, InjectPlan> merged = new HashMap<>();
+		for(Class<?> clazz : binds.keySet()) {
+			merged.put(clazz, InjectPlan.merge(clazz, binds::get));
+		}
+		
+		plans = new ClassTable<>(merged);
+		inheritedPlans = new ClassValue<InjectPlan>() {
+			@Override
+			protected InjectPlan computeValue(Class<?> type) {
+				return InjectPlan.merge(type, plans::get);
+			}
+		};
+		this.factories = new ClassTable<>(factories);
+		this.staticBinds = new LinkedHashMap<>(staticBinds);
+		this.listener = listener;
+		this.maxInjectDepth = maxInjectDepth;
+		planLookup = this::getPlan;
+	}
+	
+	@Override
+	public void inject(Object instance) {
+		inject(instance, null);
+	}
+	
+	/**
+	 * Injects instance and accumulates traversal stats of inject.
+	 */
+	public void inject(Object instance, InjectStats stats) {
+		InjectEngine.get().run(instance, planLookup, this, listener, maxInjectDepth, stats);
+	}
+	
+	/**
+	 * Injects static fields of all classes of snapshot.
+	 */
+	public void injectStatics() {
+		injectStatics(null);
+	}
+	
+	/**
+	 * Injects static fields and accumulates traversal stats of inject.
+	 * @see #injectStatics()
+	 */
+	public void injectStatics(InjectStats stats) {
+		for(InjectPlan plan : staticBinds.values()) {
+			if(plan.size() != 0) {
+				InjectEngine.get().runStatic(plan, planLookup, this, listener, maxInjectDepth, stats);
+			}
+		}
+	}
+	
+	/**
+	 * Writes resolved binds, which can be loaded by {@link #readResolvedBinds(Reader, ClassLoader, IInjectorListener)}.
+	 * @throws IllegalStateException if binds have providers of custom rules, its can't be written
+	 */
+	public void writeResolvedBinds(Writer writer) throws IOException {
+		ResolvedBinds.write(plans, staticBinds, factories, writer);
+	}
+	
+	/**
+	 * Loads injector from resolved binds without scanning of classes and resolve, e.g. for AOT compiled applications.
+	 */
+	public static FrozenInjector readResolvedBinds(Reader reader, ClassLoader loader, IInjectorListener listener) throws IOException {
+		return ResolvedBinds.read(reader, loader, listener);
+	}
+	
+	/**
+	 * Collects reflection metadata of binds and constructor factories for native-image build.
+	 */
+	public ReflectionConfig getReflectionConfig() {
+		final ReflectionConfig config = new ReflectionConfig();
+		plans.forEach(config::addPlan);
+		staticBinds.forEach(config::addPlan);
+		factories.forEach((clazz, factory) -> config.addFactory(factory));
+		return config;
+	}
+	
+	private InjectPlan getPlan(Class<?> clazz) {
+		final InjectPlan plan = plans.get(clazz);
+		return plan != null ? plan : inheritedPlans.get(clazz);
+	}
+	
+	@Override
+	public <T> T newInstance(Class<T> clazz) {
+		return InjectPlan.newInstance(clazz, this);
+	}
+	
+	@Override
+	public ConstructorFactory getFactory(Class<?> clazz) {
+		return factories.get(clazz);
+	}
+}
@@ -16,6 +16,8 @@
 package f3.commons.inject;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 
 /**
  * @author n3k0nation
@@ -23,6 +25,19 @@ import java.lang.reflect.Field;
  */
 public interface IInjectorListener {
 	void onBindNotFound(Class<?> injectClass, Field injectField);
+	
+	/**
+	 * Constructor parameter isn't resolved, ignored by default.
+	 */
+	default void onBindNotFound(Class<?> injectClass, Parameter injectParameter) {
+	}
+	
 	void onFailedProvideDepend(Field injectField, Object depend, RuntimeException e);
 	void onFailedInject(Field injectField, Object dependInstance);
+	
+	/**
+	 * {@link PostConstruct} or {@link PreDestroy} method is failed, ignored by default.
+	 */
+	default void onFailedLifecycle(Object instance, Method method, Throwable e) {
+	}
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.util.function.Function;
+
+/**
+ * Per thread worklist of instances which waits inject. Depends of injected instance are pushed to worklist
+ * instead of recursive inject, so depth of object graph is limited by heap instead of thread stack.
+ * Nested inject calls (e.g. from providers) processes only own instances, so its instances are fully injected on return.
+ * Instance with post construct callbacks leaves marker under its depends, callbacks are called when marker is popped,
+ * i.e. after whole subgraph of instance is injected.
+ * @author n3k0nation
+ *
+ */
+final class InjectEngine {
+	private final static ThreadLocal<InjectEngine> engines = ThreadLocal.withInitial(InjectEngine::new);
+	
+	private Object[] instances = new Object[64];
+	private int[] depths = new int[64];
+	private int size;
+	/** depth of instance which is injecting now, -1 if there is no inject on this thread */
+	private int depth = -1;
+	private int maxDepth;
+	private InjectStats stats;
+	
+	static InjectEngine get() {
+		return engines.get();
+	}
+	
+	/**
+	 * @param plans gives plan of runtime class, empty plan if class haven't binds
+	 */
+	void run(Object instance, Function<Class<?>, InjectPlan> plans, IInjector injector, IInjectorListener listener, int maxDepth, InjectStats stats) {
+		run(null, instance, null, 0, 0, plans, injector, listener, maxDepth, stats);
+	}
+	
+	/**
+	 * Injects range of instances as roots of one traversal, state of engine is set up once for whole batch.
+	 */
+	void runAll(Object[] instances, int from, int to, Function<Class<?>, InjectPlan> plans, IInjector injector,
+			IInjectorListener listener, int maxDepth, InjectStats stats) {
+		run(null, null, instances, from, to, plans, injector, listener, maxDepth, stats);
+	}
+	
+	/**
+	 * Injects static fields of plan, its depends are injected as usual.
+	 */
+	void runStatic(InjectPlan staticPlan, Function<Class<?>, InjectPlan> plans, IInjector injector, IInjectorListener listener, int maxDepth, InjectStats stats) {
+		run(staticPlan, null, null, 0, 0, plans, injector, listener, maxDepth, stats);
+	}
+	
+	private void run(InjectPlan staticPlan, Object instance, Object[] batch, int from, int to, Function<Class<?>, InjectPlan> plans,
+			IInjector injector, IInjectorListener listener, int maxDepth, InjectStats stats) {
+		final int base = size;
+		final int parentDepth = depth;
+		final int parentMaxDepth = this.maxDepth;
+		final InjectStats parentStats = this.stats;
+		this.maxDepth = maxDepth;
+		if(stats != null) {
+			this.stats = stats;
+		}
+		
+		try {
+			if(staticPlan != null) { //static fields are root of graph
+				depth = parentDepth + 1;
+				staticPlan.inject(null, injector, listener, this);
+				if(this.stats != null) {
+					this.stats.onInject(depth, staticPlan.size());
+				}
+			} else if(batch != null) {
+				for(int i = to - 1; i >= from; i--) { //first instance is injected first
+					if(batch[i] != null) {
+						push(batch[i]);
+					}
+				}
+			} else {
+				push(instance);
+			}
+			
+			while(size > base) {
+				final Object current = instances[--size];
+				instances[size] = null;
+				if(depths[size] < 0) { //subgraph of instance is injected
+					depth = ~depths[size];
+					Lifecycle.of(current.getClass()).postConstruct(current, listener);
+					continue;
+				}
+				depth = depths[size];
+				
+				if(Lifecycle.of(current.getClass()).hasPostConstruct()) {
+					add(current, ~depth);
+				}
+				
+				final InjectPlan plan = plans.apply(current.getClass());
+				if(plan.size() != 0) {
+					plan.inject(current, injector, listener, this);
+				}
+				
+				if(this.stats != null) {
+					this.stats.onInject(depth, plan.size());
+				}
+			}
+		} finally {
+			while(size > base) { //inject is failed, drop rest of instances
+				instances[--size] = null;
+			}
+			depth = parentDepth;
+			this.maxDepth = parentMaxDepth;
+			this.stats = parentStats;
+		}
+	}
+	
+	/**
+	 * Schedules inject of depend of instance which is injecting now.
+	 */
+	void push(Object instance) {
+		final int instanceDepth = depth + 1;
+		if(instanceDepth > maxDepth) {
+			throw new IllegalStateException("Inject depth limit " + maxDepth + " is exceeded by " + instance.getClass().getName());
+		}
+		
+		add(instance, instanceDepth);
+		if(stats != null) {
+			stats.onPending(size);
+		}
+	}
+	
+	private void add(Object instance, int instanceDepth) {
+		if(size == instances.length) {
+			final int length = size << 1;
+			final Object[] grownInstances = new Object[length];
+			final int[] grownDepths = new int[length];
+			System.arraycopy(instances, 0, grownInstances, 0, size);
+			System.arraycopy(depths, 0, grownDepths, 0, size);
+			instances = grownInstances;
+			depths = grownDepths;
+		}
+		
+		instances[size] = instance;
+		depths[size] = instanceDepth;
+		size++;
+	}
+}
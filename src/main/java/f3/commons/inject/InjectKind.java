@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+/**
+ * Kind of inject field or constructor parameter: plain depend, deferred handle to depend or all bound implementations.
+ * @author n3k0nation
+ *
+ */
+public enum InjectKind {
+	/** field receive depend instance */
+	DIRECT,
+	/** field receive {@link Provider}, each get creates depend */
+	PROVIDER,
+	/** field receive {@link Lazy}, depend created on first get */
+	LAZY,
+	/** field receive immutable {@link List} of all bound implementations */
+	LIST,
+	/** field receive immutable {@link Set} of all bound implementations */
+	SET,
+	/** field receive array of all bound implementations */
+	ARRAY,
+	/** field receive immutable {@link Map} of all named implementations by its {@link NamedScope} names */
+	MAP;
+	
+	public boolean isDeferred() {
+		return this == PROVIDER || this == LAZY;
+	}
+	
+	/**
+	 * @return true if field receive all bound implementations of element type
+	 */
+	public boolean isMulti() {
+		return this == LIST || this == SET || this == ARRAY || this == MAP;
+	}
+	
+	public static InjectKind of(Field field) {
+		return of(field.getType());
+	}
+	
+	public static InjectKind of(Parameter parameter) {
+		return of(parameter.getType());
+	}
+	
+	public static InjectKind of(Class<?> type) {
+		if(type == Provider.class) {
+			return PROVIDER;
+		}
+		
+		if(type == Lazy.class) {
+			return LAZY;
+		}
+		
+		if(type == List.class) {
+			return LIST;
+		}
+		
+		if(type == Set.class) {
+			return SET;
+		}
+		
+		if(type == Map.class) {
+			return MAP;
+		}
+		
+		if(type.isArray() && !type.getComponentType().isPrimitive()) {
+			return ARRAY;
+		}
+		
+		return DIRECT;
+	}
+	
+	/**
+	 * @return type which must be provided for field, for deferred fields it is handle type argument
+	 */
+	public static Class<?> getDependType(Field field) {
+		return getDependType(field.getType(), field.getGenericType());
+	}
+	
+	/**
+	 * @return type which must be provided for constructor parameter, for deferred parameters it is handle type argument
+	 */
+	public static Class<?> getDependType(Parameter parameter) {
+		return getDependType(parameter.getType(), parameter.getParameterizedType());
+	}
+	
+	/**
+	 * @return type of implementations which must be provided for multi field, component type for arrays and value type for maps
+	 */
+	public static Class<?> getElementType(Field field) {
+		return getElementType(field.getType(), field.getGenericType());
+	}
+	
+	/**
+	 * @return type of implementations which must be provided for multi constructor parameter, component type for arrays and value type for maps
+	 */
+	public static Class<?> getElementType(Parameter parameter) {
+		return getElementType(parameter.getType(), parameter.getParameterizedType());
+	}
+	
+	private static Class<?> getElementType(Class<?> rawType, Type type) {
+		if(rawType.isArray()) {
+			return rawType.getComponentType();
+		}
+		
+		return getTypeArgument(type, rawType == Map.class ? 1 : 0);
+	}
+	
+	/**
+	 * @return key type of map field
+	 */
+	public static Class<?> getKeyType(Field field) {
+		return getTypeArgument(field.getGenericType(), 0);
+	}
+	
+	/**
+	 * @return key type of map constructor parameter
+	 */
+	public static Class<?> getKeyType(Parameter parameter) {
+		return getTypeArgument(parameter.getParameterizedType(), 0);
+	}
+	
+	private static Class<?> getTypeArgument(Type type, int index) {
+		if(!(type instanceof ParameterizedType)) {
+			return Object.class;
+		}
+		
+		return getRawType(((ParameterizedType) type).getActualTypeArguments()[index]);
+	}
+	
+	private static Class<?> getDependType(Class<?> rawType, Type type) {
+		if(!of(rawType).isDeferred()) {
+			return rawType;
+		}
+		
+		if(!(type instanceof ParameterizedType)) {
+			return Object.class;
+		}
+		
+		return getRawType(((ParameterizedType) type).getActualTypeArguments()[0]);
+	}
+	
+	static Class<?> getRawType(Type type) {
+		if(type instanceof Class) {
+			return (Class<?>) type;
+		}
+		
+		if(type instanceof ParameterizedType) {
+			return getRawType(((ParameterizedType) type).getRawType());
+		}
+		
+		if(type instanceof WildcardType) {
+			return getRawType(((WildcardType) type).getUpperBounds()[0]);
+		}
+		
+		if(type instanceof GenericArrayType) {
+			final Class<?> component = getRawType(((GenericArrayType) type).getGenericComponentType());
+			return Array.newInstance(component, 0).getClass();
+		}
+		
+		return Object.class;
+	}
+}
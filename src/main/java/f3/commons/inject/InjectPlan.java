@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.ConstructorFactory;
+
+/**
+ * Immutable binds of class: inject fields, its resolved provider chains and flatten providers as parallel arrays.
+ * Changes creates new plan, so plans are shared between injectors without copying.
+ * @author n3k0nation
+ *
+ */
+final class InjectPlan {
+	final static InjectPlan EMPTY = new InjectPlan(new Field[0], new AbstractProvider[0], new AbstractProvider[0]);
+	
+	private final Field[] fields;
+	private final AbstractProvider[] providers;
+	/** flatten providers, used on inject, primitive fields may have {@link PrimitiveWriter} */
+	private final AbstractProvider[] targets;
+	
+	private InjectPlan(Field[] fields, AbstractProvider[] providers, AbstractProvider[] targets) {
+		this.fields = fields;
+		this.providers = providers;
+		this.targets = targets;
+	}
+	
+	int size() {
+		return fields.length;
+	}
+	
+	Field getField(int index) {
+		return fields[index];
+	}
+	
+	AbstractProvider getProvider(int index) {
+		return providers[index];
+	}
+	
+	private int indexOf(Field field) {
+		for(int i = 0; i < fields.length; i++) {
+			if(fields[i].equals(field)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	AbstractProvider get(Field field) {
+		final int index = indexOf(field);
+		return index < 0 ? null : providers[index];
+	}
+	
+	InjectPlan with(Field field, AbstractProvider provider) {
+		field.setAccessible(true);
+		int index = indexOf(field);
+		if(index >= 0 && providers[index] == provider) {
+			return this;
+		}
+		
+		final int size = index < 0 ? fields.length + 1 : fields.length;
+		final Field[] newFields = copyOf(fields, new Field[size]);
+		final AbstractProvider[] newProviders = copyOf(providers, new AbstractProvider[size]);
+		final AbstractProvider[] newTargets = copyOf(targets, new AbstractProvider[size]);
+		if(index < 0) {
+			index = size - 1;
+		}
+		
+		newFields[index] = field;
+		newProviders[index] = provider;
+		newTargets[index] = PrimitiveWriter.of(field, provider.flatten());
+		return new InjectPlan(newFields, newProviders, newTargets);
+	}
+	
+	InjectPlan without(Field field) {
+		final int index = indexOf(field);
+		if(index < 0) {
+			return this;
+		}
+		
+		final int size = fields.length - 1;
+		final Field[] newFields = new Field[size];
+		final AbstractProvider[] newProviders = new AbstractProvider[size];
+		final AbstractProvider[] newTargets = new AbstractProvider[size];
+		for(int i = 0, j = 0; i < fields.length; i++) {
+			if(i == index) {
+				continue;
+			}
+			newFields[j] = fields[i];
+			newProviders[j] = providers[i];
+			newTargets[j] = targets[i];
+			j++;
+		}
+		return new InjectPlan(newFields, newProviders, newTargets);
+	}
+	
+	/**
+	 * @return plan with binds of this plan and binds of inherited plan which fields are not bound by this plan
+	 */
+	InjectPlan merge(InjectPlan inherited) {
+		int added = 0;
+		for(int i = 0; i < inherited.fields.length; i++) {
+			if(indexOf(inherited.fields[i]) < 0) {
+				added++;
+			}
+		}
+		
+		if(added == 0) {
+			return this;
+		}
+		
+		final int size = fields.length + added;
+		final Field[] newFields = copyOf(fields, new Field[size]);
+		final AbstractProvider[] newProviders = copyOf(providers, new AbstractProvider[size]);
+		final AbstractProvider[] newTargets = copyOf(targets, new AbstractProvider[size]);
+		for(int i = 0, j = fields.length; i < inherited.fields.length; i++) {
+			if(indexOf(inherited.fields[i]) < 0) {
+				newFields[j] = inherited.fields[i];
+				newProviders[j] = inherited.providers[i];
+				newTargets[j] = inherited.targets[i];
+				j++;
+			}
+		}
+		return new InjectPlan(newFields, newProviders, newTargets);
+	}
+	
+	/**
+	 * Merges binds of class and all its superclasses, binds of subclass overrides binds of superclass for same field.
+	 * @param binds gives own binds of class or null if class haven't binds
+	 */
+	static InjectPlan merge(Class<?> type, Function<Class<?>, InjectPlan> binds) {
+		InjectPlan merged = EMPTY;
+		for(Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			final InjectPlan plan = binds.apply(clazz);
+			if(plan != null) {
+				merged = merged == EMPTY ? plan : merged.merge(plan);
+			}
+		}
+		return merged;
+	}
+	
+	private static <T> T[] copyOf(T[] source, T[] target) {
+		System.arraycopy(source, 0, target, 0, Math.min(source.length, target.length));
+		return target;
+	}
+	
+	/**
+	 * @return estimated retained bytes of plan for 64-bit jvm with compressed references
+	 */
+	long getFootprint() {
+		final long array = align(16 + 4L * fields.length);
+		return 24 + 3 * array;
+	}
+	
+	static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+	
+	/**
+	 * Injects fields of instance, depends are pushed to engine for inject instead of recursive inject.
+	 */
+	void inject(Object instance, IInjector injector, IInjectorListener listener, InjectEngine engine) {
+		final ContextPool pool = ContextPool.get();
+		final ProviderContext context = pool.acquire(null, instance, injector);
+		try {
+			for(int i = 0; i < fields.length; i++) {
+				final Field injectField = fields[i];
+				final AbstractProvider provider = targets[i];
+				if(provider instanceof PrimitiveWriter) { //copied without boxing
+					((PrimitiveWriter) provider).write(instance, listener);
+					continue;
+				}
+				
+				context.setTarget(injectField);
+				
+				Object dependInstance;
+				try {
+					dependInstance = provider.provide(context);
+				} catch(RuntimeException e) {
+					listener.onFailedProvideDepend(injectField, provider.getDepend(), e);
+					continue;
+				}
+				
+				if(dependInstance != null && !provider.isInjected(dependInstance)) {
+					engine.push(dependInstance);
+				}
+				
+				try {
+					injectField.set(instance, dependInstance);
+				} catch(ReflectiveOperationException e) {
+					listener.onFailedInject(injectField, dependInstance);
+				}
+			}
+		} finally {
+			pool.release();
+		}
+	}
+	
+	static <T> T newInstance(Class<T> clazz, IInjector injector) {
+		final ConstructorFactory factory = injector.getFactory(clazz);
+		final Object instance;
+		if(factory != null) {
+			instance = factory.newInstance(new ProviderContext(null, null, injector));
+		} else {
+			try {
+				final Constructor<T> constructor = clazz.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				instance = constructor.newInstance();
+			} catch(ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		injector.inject(instance);
+		return clazz.cast(instance);
+	}
+	
+	/**
+	 * Resolves constructor of class once, created instances are not injected.
+	 * @return supplier of new instances by {@link javax.inject.Inject} constructor or default constructor
+	 */
+	static Supplier<Object> newCreator(Class<?> clazz, IInjector injector) {
+		final ConstructorFactory factory = injector.getFactory(clazz);
+		if(factory != null) {
+			final ProviderContext context = new ProviderContext(null, null, injector);
+			return () -> factory.newInstance(context);
+		}
+		
+		final MethodHandle handle;
+		try {
+			final Constructor<?> constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			handle = MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.genericMethodType(0));
+		} catch(ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+		
+		return () -> {
+			try {
+				return (Object) handle.invokeExact();
+			} catch(RuntimeException | Error e) {
+				throw e;
+			} catch(Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import lombok.Getter;
+
+/**
+ * Traversal stats of inject calls. Stats are accumulated by all inject calls which receives it, until {@link #reset()}.
+ * Not thread safe, use own stats for each thread.
+ * @author n3k0nation
+ *
+ */
+@Getter
+public final class InjectStats {
+	/** count of injected instances, including depends */
+	private long instances;
+	/** count of injected fields */
+	private long fields;
+	/** max depth of injected depend, root instance has zero depth */
+	private int maxDepth;
+	/** max count of instances which waits inject */
+	private int maxPending;
+	
+	void onInject(int depth, int fieldCount) {
+		instances++;
+		fields += fieldCount;
+		if(depth > maxDepth) {
+			maxDepth = depth;
+		}
+	}
+	
+	void onPending(int pending) {
+		if(pending > maxPending) {
+			maxPending = pending;
+		}
+	}
+	
+	public void reset() {
+		instances = 0;
+		fields = 0;
+		maxDepth = 0;
+		maxPending = 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "InjectStats [instances=" + instances + ", fields=" + fields + ", maxDepth=" + maxDepth + ", maxPending=" + maxPending + "]";
+	}
+}
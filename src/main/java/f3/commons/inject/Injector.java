@@ -16,55 +16,195 @@
 package f3.commons.inject;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import javax.inject.Inject;
-import javax.inject.Scope;
 
 import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.ConstructorFactory;
 import f3.commons.inject.providers.DefaultProvider;
+import f3.commons.inject.providers.LazyProvider;
+import f3.commons.inject.providers.MultiProvider;
 import f3.commons.inject.providers.NamedScopeProvider;
 import f3.commons.inject.providers.SingletonProvider;
 import f3.commons.inject.providers.SpecifiedScopeProvider;
+import f3.commons.inject.providers.UnitScopeProvider;
 import f3.commons.inject.rules.DefaultProviderRule;
 import f3.commons.inject.rules.IProviderRule;
 import f3.commons.inject.rules.SingletonProviderRule;
 import f3.commons.reflection.ClassUtils;
-import f3.commons.reflection.FieldUtils;
 import f3.commons.reflection.exception.ClassNotFoundUncheckedException;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 
 /**
+ * Binds are changed under lock of injector and published by copy on write, so inject and newInstance
+ * can run concurrently with binds changes without lock, seeing each bind before or after its change.
  * @author n3k0nation
  *
  */
-public class Injector {
-	private final Map<Class<?>, Map<Field, AbstractProvider>> binds = new HashMap<>();
+public class Injector implements IInjector, AutoCloseable {
+	/** depth limit which stops endless inject of non deferred cycles, far above depth of real object graphs */
+	public final static int DEFAULT_MAX_INJECT_DEPTH = 1 << 16;
+	public final static long DEFAULT_CLOSE_TIMEOUT_MILLIS = 30_000;
+	/** count of instances which are created and injected by one task of parallel batch */
+	private final static int BATCH_CHUNK = 256;
+	/** estimated size of provider with its shared instance state */
+	private final static int PROVIDER_FOOTPRINT = 64;
+	
+	/** field or constructor (if field is null) of bound class which receives depends */
+	@RequiredArgsConstructor
+	private static class InjectPoint {
+		private final Class<?> owner;
+		private final Field field;
+		private final Constructor<?> constructor;
+		/** depend types of point */
+		private final Class<?>[] types;
+	}
+	
+	/** immutable binds of class, changes replaces plan */
+	private final Map<Class<?>, InjectPlan> binds = new ConcurrentHashMap<>();
+	private final Map<Class<?>, ConstructorFactory> factories = new ConcurrentHashMap<>();
+	/** binds of static fields of own classes, its are injected by {@link #injectStatics()} only */
+	private final Map<Class<?>, InjectPlan> staticBinds = new HashMap<>();
+	/** classes which static binds are changed since last {@link #injectStatics()} */
+	private final Set<Class<?>> dirtyStatics = new LinkedHashSet<>();
+	/** interned default providers by depend (implementation class or member), shared between all resolved points and binds */
+	private final Map<Object, DefaultProvider> defaultProviders = new HashMap<>();
+	/** interned singleton providers of binds by depend, so singleton binds of same depend share instance */
+	private final Map<Object, SingletonProvider> singletonProviders = new HashMap<>();
 	private final List<IProviderRule> rules = new ArrayList<>();
+	private final Map<Class<? extends Annotation>, IProviderRule[]> rulesIndex = new HashMap<>();
+	private final Map<Class<?>, List<AbstractProvider>> classProviders = new LinkedHashMap<>();
+	private final List<Class<?>> boundClasses = new ArrayList<>();
+	private final Map<Class<?>, List<InjectPoint>> points = new HashMap<>();
+	private final Map<Class<?>, List<InjectPoint>> pointsByType = new HashMap<>();
+	/** providers of this and parent injectors, own providers first */
+	private List<AbstractProvider> scannedProviders = Collections.emptyList();
+	/** classes of this and parent injectors, own classes first */
+	private List<Class<?>> resolveClasses = Collections.emptyList();
 	private IInjectorListener listener = new InjectorListenerStub();
+	private final Function<Class<?>, InjectPlan> bindsLookup = this::getBinds;
+	private final Function<Class<?>, InjectPlan> planLookup = this::getPlan;
+	/** merged plans of runtime classes, replaced on any binds change */
+	private volatile ClassValue<InjectPlan> plans = newPlanCache();
+	/** max depth of injected depend, root instance has zero depth */
+	@Getter private int maxInjectDepth = DEFAULT_MAX_INJECT_DEPTH;
+	private final Injector parent;
+	/** child injectors of foreign class loaders, null if weak loaders mode is disabled */
+	private LoaderInjectors loaderInjectors;
+	/** class loader of child injector in weak loaders mode, plans are cached only in classes of this loader */
+	private ClassLoader ownLoader;
+	/** sealed injector has children and its binds can't be changed */
+	private volatile boolean isSealed;
 	
 	public Injector() {
+		this(null);
 		rules.add(new DefaultProviderRule(NamedScope.class, NamedScopeProvider::new));
 		rules.add(new SingletonProviderRule());
 		rules.add(new DefaultProviderRule(SpecifiedScope.class, SpecifiedScopeProvider::new));
+		rules.add(new DefaultProviderRule(UnitScope.class, UnitScopeProvider::new));
+	}
+	
+	private Injector(Injector parent) {
+		this.parent = parent;
+		if(parent != null) {
+			rules.addAll(parent.rules);
+			listener = parent.listener;
+			maxInjectDepth = parent.maxInjectDepth;
+			scannedProviders = parent.scannedProviders;
+			resolveClasses = parent.resolveClasses;
+		}
+	}
+	
+	/**
+	 * Creates injector which binds are layered over binds of this injector: lookups fall back to this injector
+	 * if child haven't own bind. This injector becomes sealed and all its binds and rules can't be changed anymore.
+	 */
+	public synchronized Injector createChild() {
+		isSealed = true;
+		return new Injector(this);
+	}
+	
+	/**
+	 * Enables weak loaders mode: classes of loaders which are not home loader (or its parents) are bound to own child injector
+	 * of its loader instead of this injector. Child injector is reachable only from classes of its loader,
+	 * so binds and singletons of unreachable loader (e.g. unloaded plugin) are collected with it.
+	 * Instances are injected by injector of its class loader, so instances of home classes see only binds of home classes.
+	 * This injector becomes sealed when first foreign class is bound.
+	 */
+	public synchronized void enableWeakLoaders(@NonNull ClassLoader homeLoader) {
+		checkMutable();
+		if(parent != null) {
+			throw new IllegalStateException("Weak loaders mode is available only for root injector");
+		}
+		loaderInjectors = new LoaderInjectors(this, homeLoader, (home, loader) -> {
+			synchronized(home) { //waits for binds in progress
+				home.isSealed = true;
+			}
+			final Injector child = new Injector(home);
+			child.ownLoader = loader;
+			return child;
+		});
 	}
 	
-	public void clearBinds() {
+	private void checkMutable() {
+		if(isSealed) {
+			throw new IllegalStateException("Injector binds are shared with child injectors");
+		}
+	}
+	
+	public synchronized void clearBinds() {
+		checkMutable();
 		binds.clear();
+		staticBinds.clear();
+		dirtyStatics.clear();
+		factories.clear();
+		defaultProviders.clear();
+		singletonProviders.clear();
+		classProviders.clear();
+		boundClasses.clear();
+		points.clear();
+		pointsByType.clear();
+		rebuildProviders();
+		plans = newPlanCache();
 	}
 	
-	public void addRule(IProviderRule rule) {
+	public synchronized void addRule(IProviderRule rule) {
+		checkMutable();
 		rules.add(rule);
+		rulesIndex.clear();
 	}
 	
-	public boolean removeRule(IProviderRule rule) {
+	public synchronized boolean removeRule(IProviderRule rule) {
+		checkMutable();
+		rulesIndex.clear();
 		return rules.remove(rule);
 	}
 	
@@ -96,51 +236,502 @@ public class Injector {
 		addBind(inject, depend, true);
 	}
 	
-	private void addBind(Field inject, Object depend, boolean isSingleton) {
+	private synchronized void addBind(Field inject, Object depend, boolean isSingleton) {
+		checkMutable();
 		final Class<?> clazz = inject.getDeclaringClass();
-		Map<Field, AbstractProvider> submap = binds.get(clazz);
-		if(submap == null) {
-			binds.put(clazz, submap = new HashMap<>());
+		final AbstractProvider provider = wrapDeferred(InjectKind.of(inject), isSingleton ? getSingletonProvider(depend) : getDefaultProvider(depend));
+		if(Modifier.isStatic(inject.getModifiers())) {
+			staticBinds.put(clazz, staticBinds.getOrDefault(clazz, InjectPlan.EMPTY).with(inject, provider));
+			dirtyStatics.add(clazz);
+			return;
 		}
 		
-		submap.put(inject, isSingleton ? new SingletonProvider(depend, null) : new DefaultProvider(depend));
+		binds.put(clazz, getOwnBinds(clazz).with(inject, provider));
+		plans = newPlanCache();
 	}
 	
+	private AbstractProvider wrapDeferred(InjectKind kind, AbstractProvider provider) {
+		if(!kind.isDeferred()) {
+			return provider;
+		}
+		
+		return new LazyProvider(provider, kind == InjectKind.LAZY);
+	}
+	
+	/**
+	 * Binds classes which are not bound yet. Only inject points affected by added classes are resolved again.
+	 */
 	public void autoBind(List<Class<?>> classes) {
-		final List<AbstractProvider> providers = getProviders(classes);
+		if(loaderInjectors == null) {
+			bindClasses(classes);
+			return;
+		}
 		
+		final Map<Injector, List<Class<?>>> groups = groupByLoaders(classes);
+		for(Map.Entry<Injector, List<Class<?>>> entry : groups.entrySet()) {
+			entry.getKey().bindClasses(entry.getValue());
+		}
+	}
+	
+	/**
+	 * @return classes grouped by injectors of its loaders, home classes first
+	 */
+	private Map<Injector, List<Class<?>>> groupByLoaders(Collection<Class<?>> classes) {
+		final List<Class<?>> homeClasses = new ArrayList<>();
+		final List<Class<?>> foreignClasses = new ArrayList<>();
+		for(Class<?> clazz : classes) {
+			(loaderInjectors.isHome(clazz) ? homeClasses : foreignClasses).add(clazz);
+		}
+		
+		final Map<Injector, List<Class<?>>> groups = new LinkedHashMap<>();
+		if(!homeClasses.isEmpty()) {
+			groups.put(this, homeClasses);
+		}
+		
+		for(int i = 0; i < foreignClasses.size(); i++) { //children are created only after home classes
+			final Class<?> clazz = foreignClasses.get(i);
+			groups.computeIfAbsent(loaderInjectors.get(clazz), injector -> new ArrayList<>()).add(clazz);
+		}
+		return groups;
+	}
+	
+	private synchronized void bindClasses(List<Class<?>> classes) {
+		checkMutable();
+		final ArrayList<Class<?>> added = new ArrayList<>();
 		for(int i = 0; i < classes.size(); i++) {
 			final Class<?> clazz = classes.get(i);
-			final int modifiers = clazz.getModifiers();
-			if(ClassUtils.isAbstractClass(clazz) || !Modifier.isPublic(modifiers) || clazz.isSynthetic()) {
+			if(isRegistered(clazz)) {
 				continue;
 			}
 			
-			final List<Field> fields = FieldUtils.getAnnotatedField(clazz, Inject.class);
-			for(int j = 0; j < fields.size(); j++) {
-				final Field field = fields.get(j);
-				field.setAccessible(true);
-				
-				Map<Field, AbstractProvider> submap = binds.get(clazz);
-				if(submap == null) {
-					binds.put(clazz, submap = new HashMap<>());
+			classProviders.put(clazz, getProviders(clazz));
+			boundClasses.add(clazz);
+			added.add(clazz);
+		}
+		
+		if(added.isEmpty()) {
+			return;
+		}
+		
+		rebuildProviders();
+		
+		final Set<InjectPoint> affected = new LinkedHashSet<>();
+		for(int i = 0; i < added.size(); i++) {
+			affected.addAll(registerPoints(added.get(i)));
+		}
+		
+		for(int i = 0; i < added.size(); i++) {
+			collectDependents(getProvidedTypes(added.get(i)), affected);
+		}
+		
+		resolve(affected);
+	}
+	
+	/**
+	 * Removes classes binds and its providers. Only inject points which may use removed providers are resolved again.
+	 * Child injector can unbind only own classes.
+	 */
+	public void unbind(Collection<Class<?>> classes) {
+		if(loaderInjectors == null) {
+			unbindClasses(classes);
+			return;
+		}
+		
+		final List<Class<?>> homeClasses = new ArrayList<>();
+		for(Class<?> clazz : classes) {
+			if(loaderInjectors.isHome(clazz)) {
+				homeClasses.add(clazz);
+			} else {
+				loaderInjectors.get(clazz).unbindClasses(Collections.singletonList(clazz));
+			}
+		}
+		
+		if(!homeClasses.isEmpty()) {
+			unbindClasses(homeClasses);
+		}
+	}
+	
+	private synchronized void unbindClasses(Collection<Class<?>> classes) {
+		checkMutable();
+		final Set<Class<?>> removed = new HashSet<>();
+		final Set<InjectPoint> affected = new LinkedHashSet<>();
+		for(Class<?> clazz : classes) {
+			if(!classProviders.containsKey(clazz) || !removed.add(clazz)) {
+				continue;
+			}
+			
+			collectDependents(getProvidedTypes(clazz), affected);
+		}
+		
+		if(removed.isEmpty()) {
+			return;
+		}
+		
+		for(Class<?> clazz : removed) {
+			classProviders.remove(clazz);
+			boundClasses.remove(clazz);
+			unregisterPoints(clazz);
+			binds.remove(clazz);
+			staticBinds.remove(clazz);
+			dirtyStatics.remove(clazz);
+			factories.remove(clazz);
+		}
+		
+		defaultProviders.keySet().removeIf(depend -> removed.contains(getDeclaringClass(depend)));
+		singletonProviders.keySet().removeIf(depend -> removed.contains(getDeclaringClass(depend)));
+		
+		affected.removeIf(point -> removed.contains(point.owner));
+		rebuildProviders();
+		resolve(affected);
+	}
+	
+	private static boolean isBindable(Class<?> clazz) {
+		final int modifiers = clazz.getModifiers();
+		return !ClassUtils.isAbstractClass(clazz) && Modifier.isPublic(modifiers) && !clazz.isSynthetic();
+	}
+	
+	private boolean isRegistered(Class<?> clazz) {
+		return classProviders.containsKey(clazz) || parent != null && parent.isRegistered(clazz);
+	}
+	
+	private void rebuildProviders() {
+		final ArrayList<AbstractProvider> providers = new ArrayList<>();
+		for(List<AbstractProvider> list : classProviders.values()) {
+			providers.addAll(list);
+		}
+		
+		final ArrayList<Class<?>> classes = new ArrayList<>(boundClasses);
+		if(parent != null) {
+			providers.addAll(parent.scannedProviders);
+			classes.addAll(parent.resolveClasses);
+		}
+		
+		scannedProviders = providers;
+		resolveClasses = classes;
+	}
+	
+	private List<InjectPoint> registerPoints(Class<?> clazz) {
+		if(!isBindable(clazz)) {
+			return Collections.emptyList();
+		}
+		
+		final ArrayList<InjectPoint> owned = new ArrayList<>();
+		final ClassMeta meta = ClassMeta.of(clazz);
+		final Field[] fields = meta.getInjectFields();
+		for(int i = 0; i < fields.length; i++) {
+			final Field field = fields[i];
+			final Class<?>[] types = InjectKind.of(field).isMulti()
+					? new Class<?>[] { InjectKind.getDependType(field), InjectKind.getElementType(field) }
+					: new Class<?>[] { InjectKind.getDependType(field) };
+			owned.add(new InjectPoint(clazz, field, null, types));
+		}
+		
+		final Constructor<?> constructor = meta.getInjectConstructor();
+		if(constructor != null) {
+			final Parameter[] parameters = constructor.getParameters();
+			final List<Class<?>> types = new ArrayList<>(parameters.length);
+			for(int i = 0; i < parameters.length; i++) {
+				types.add(InjectKind.getDependType(parameters[i]));
+				if(InjectKind.of(parameters[i]).isMulti()) {
+					types.add(InjectKind.getElementType(parameters[i]));
 				}
-				
-				final AbstractProvider hittedProvider = providers.stream()
-						.filter(provider -> provider.isProvideFor(clazz, field))
-						//.sorted((p1, p2) -> p1 instanceof DefaultProvider ? p2 instanceof DefaultProvider ? 0 : 1 : -1)
-						.sorted((p1, p2) -> p1.getPriority(clazz, field) - p2.getPriority(clazz, field))
-						.findFirst()
-						.orElseGet(() -> tryCreateDefaultProvider(clazz, field, classes));
-				
-				if(hittedProvider == null) {
-					listener.onBindNotFound(clazz, field);
-					continue;
+			}
+			owned.add(new InjectPoint(clazz, null, constructor, types.toArray(new Class<?>[types.size()])));
+		}
+		
+		for(int i = 0; i < owned.size(); i++) {
+			final InjectPoint point = owned.get(i);
+			for(int j = 0; j < point.types.length; j++) {
+				List<InjectPoint> list = pointsByType.get(point.types[j]);
+				if(list == null) {
+					pointsByType.put(point.types[j], list = new ArrayList<>());
 				}
-				
-				submap.put(field, hittedProvider);
+				list.add(point);
 			}
 		}
+		
+		points.put(clazz, owned);
+		return owned;
+	}
+	
+	private void unregisterPoints(Class<?> clazz) {
+		final List<InjectPoint> owned = points.remove(clazz);
+		if(owned == null) {
+			return;
+		}
+		
+		for(int i = 0; i < owned.size(); i++) {
+			final InjectPoint point = owned.get(i);
+			for(int j = 0; j < point.types.length; j++) {
+				final List<InjectPoint> list = pointsByType.get(point.types[j]);
+				if(list != null) {
+					list.remove(point);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return types of depends which can be provided by class providers or by class itself
+	 */
+	private Set<Class<?>> getProvidedTypes(Class<?> clazz) {
+		final Set<Class<?>> types = new LinkedHashSet<>();
+		types.add(clazz);
+		
+		final List<AbstractProvider> providers = classProviders.get(clazz);
+		for(int i = 0; i < providers.size(); i++) {
+			AbstractProvider provider = providers.get(i);
+			while(provider.getNext() != null) {
+				provider = provider.getNext();
+			}
+			
+			final Class<?> type = getProvidedType(provider);
+			if(type != null) {
+				types.add(type);
+			}
+		}
+		return types;
+	}
+	
+	/**
+	 * Collects inject points which type is assignable from any of types.
+	 */
+	private void collectDependents(Set<Class<?>> types, Set<InjectPoint> result) {
+		final Set<Class<?>> supertypes = new HashSet<>();
+		for(Class<?> type : types) {
+			collectSupertypes(type, supertypes);
+		}
+		
+		collectPoints(supertypes, result);
+	}
+	
+	private void collectPoints(Set<Class<?>> types, Set<InjectPoint> result) {
+		for(Class<?> type : types) {
+			final List<InjectPoint> list = pointsByType.get(type);
+			if(list != null) {
+				result.addAll(list);
+			}
+		}
+		
+		if(parent != null) {
+			parent.collectPoints(types, result);
+		}
+	}
+	
+	private static void collectSupertypes(Class<?> type, Set<Class<?>> result) {
+		if(type == null || !result.add(type)) {
+			return;
+		}
+		
+		collectSupertypes(type.getSuperclass(), result);
+		final Class<?>[] interfaces = type.getInterfaces();
+		for(int i = 0; i < interfaces.length; i++) {
+			collectSupertypes(interfaces[i], result);
+		}
+		
+		if(!type.isPrimitive()) {
+			result.add(Object.class);
+		}
+	}
+	
+	/**
+	 * Plans cache is replaced after all points are resolved, plans merged during resolve (by provider or by other thread)
+	 * are kept only by previous cache.
+	 */
+	private void resolve(Collection<InjectPoint> affected) {
+		for(InjectPoint point : affected) {
+			if(point.field != null) {
+				resolveField(point.owner, point.field);
+			} else {
+				resolveConstructor(point.owner, point.constructor);
+			}
+		}
+		plans = newPlanCache();
+	}
+	
+	/**
+	 * @return binds of class owned by this injector, for child it is copy of parent binds on first access
+	 */
+	private InjectPlan getOwnBinds(Class<?> clazz) {
+		InjectPlan plan = binds.get(clazz);
+		if(plan == null) {
+			plan = parent == null ? null : parent.getBinds(clazz);
+			binds.put(clazz, plan = plan == null ? InjectPlan.EMPTY : plan);
+		}
+		return plan;
+	}
+	
+	private ClassValue<InjectPlan> newPlanCache() {
+		return new ClassValue<InjectPlan>() {
+			@Override
+			protected InjectPlan computeValue(Class<?> type) {
+				return InjectPlan.merge(type, bindsLookup);
+			}
+		};
+	}
+	
+	/**
+	 * @return binds of runtime class merged with binds of its superclasses
+	 */
+	private InjectPlan getPlan(Class<?> clazz) {
+		if(ownLoader != null && clazz.getClassLoader() != ownLoader) { //plans of child must not be kept by classes of other loaders
+			return InjectPlan.merge(clazz, bindsLookup);
+		}
+		return plans.get(clazz);
+	}
+	
+	private InjectPlan getBinds(Class<?> clazz) {
+		final InjectPlan plan = binds.get(clazz);
+		if(plan != null || parent == null) {
+			return plan;
+		}
+		return parent.getBinds(clazz);
+	}
+	
+	@Override
+	public ConstructorFactory getFactory(Class<?> clazz) {
+		final ConstructorFactory factory = factories.get(clazz);
+		if(factory != null || parent == null) {
+			return factory;
+		}
+		return parent.getFactory(clazz);
+	}
+	
+	private void resolveField(Class<?> clazz, Field field) {
+		final boolean isStatic = Modifier.isStatic(field.getModifiers());
+		if(isStatic && !classProviders.containsKey(clazz)) { //static fields of parent classes are injected by parent
+			return;
+		}
+		
+		final InjectPlan plan = isStatic ? staticBinds.getOrDefault(clazz, InjectPlan.EMPTY) : getOwnBinds(clazz);
+		final Map<Class<?>, InjectPlan> target = isStatic ? staticBinds : binds;
+		if(isStatic) {
+			dirtyStatics.add(clazz);
+		}
+		
+		final AbstractProvider hittedProvider = scannedProviders.stream()
+				.filter(provider -> provider.isProvideFor(clazz, field))
+				//.sorted((p1, p2) -> p1 instanceof DefaultProvider ? p2 instanceof DefaultProvider ? 0 : 1 : -1)
+				.sorted((p1, p2) -> p1.getPriority(clazz, field) - p2.getPriority(clazz, field))
+				.findFirst()
+				.orElseGet(() -> InjectKind.of(field).isMulti()
+						? createMultiProvider(InjectKind.of(field), InjectKind.getElementType(field), InjectKind.getKeyType(field))
+						: tryCreateDefaultProvider(clazz, field, resolveClasses));
+		
+		if(hittedProvider == null) {
+			target.put(clazz, plan.without(field));
+			listener.onBindNotFound(clazz, field);
+			return;
+		}
+		
+		target.put(clazz, plan.with(field, wrapDeferred(InjectKind.of(field), hittedProvider)));
+	}
+	
+	private void resolveConstructor(Class<?> clazz, Constructor<?> constructor) {
+		final Parameter[] parameters = constructor.getParameters();
+		final AbstractProvider[] arguments = new AbstractProvider[parameters.length];
+		for(int i = 0; i < parameters.length; i++) {
+			final Parameter parameter = parameters[i];
+			final AbstractProvider hittedProvider = scannedProviders.stream()
+					.filter(provider -> provider.isProvideFor(clazz, parameter))
+					.sorted((p1, p2) -> p1.getPriority(clazz, parameter) - p2.getPriority(clazz, parameter))
+					.findFirst()
+					.orElseGet(() -> InjectKind.of(parameter).isMulti()
+							? createMultiProvider(InjectKind.of(parameter), InjectKind.getElementType(parameter), InjectKind.getKeyType(parameter))
+							: tryCreateDefaultProvider(clazz, parameter, resolveClasses));
+			
+			if(hittedProvider == null) {
+				factories.remove(clazz);
+				listener.onBindNotFound(clazz, parameter);
+				return;
+			}
+			
+			arguments[i] = wrapDeferred(InjectKind.of(parameter), hittedProvider);
+		}
+		
+		try {
+			factories.put(clazz, new ConstructorFactory(constructor, arguments));
+		} catch(IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Creates instance of class by its {@link Inject} constructor (or default constructor if class haven't it) and injects it.
+	 */
+	@Override
+	public <T> T newInstance(Class<T> clazz) {
+		return InjectPlan.newInstance(clazz, loaderInjectors == null ? this : loaderInjectors.get(clazz));
+	}
+	
+	/**
+	 * @see #newInstances(Class, int, boolean)
+	 */
+	public <T> List<T> newInstances(Class<T> clazz, int count) {
+		return newInstances(clazz, count, false);
+	}
+	
+	/**
+	 * Creates and injects batch of instances of one class. Constructor is resolved once for whole batch
+	 * and instances are injected as roots of one traversal instead of separate newInstance calls.
+	 * @param isParallel batch is split to chunks which are created and injected in common fork join pool
+	 * @return fixed size list of instances
+	 */
+	public <T> List<T> newInstances(Class<T> clazz, int count, boolean isParallel) {
+		final Injector injector = loaderInjectors == null ? this : loaderInjectors.get(clazz);
+		final Supplier<Object> creator = InjectPlan.newCreator(clazz, injector);
+		return injector.createAll(creator, count, isParallel);
+	}
+	
+	/**
+	 * Creates batch of instances by supplier and injects it as roots of one traversal.
+	 * @param isParallel batch is split to chunks, so supplier must be thread safe
+	 * @return fixed size list of instances
+	 */
+	public <T> List<T> newInstances(@NonNull Supplier<? extends T> supplier, int count, boolean isParallel) {
+		return createAll(supplier, count, isParallel);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> List<T> createAll(Supplier<?> supplier, int count, boolean isParallel) {
+		if(count < 0) {
+			throw new IllegalArgumentException("Negative count: " + count);
+		}
+		
+		final Object[] instances = new Object[count];
+		if(!isParallel || count <= BATCH_CHUNK) {
+			createAll(supplier, instances, 0, count);
+		} else {
+			final int chunks = (count + BATCH_CHUNK - 1) / BATCH_CHUNK;
+			IntStream.range(0, chunks).parallel()
+					.forEach(chunk -> createAll(supplier, instances, chunk * BATCH_CHUNK, Math.min(count, (chunk + 1) * BATCH_CHUNK)));
+		}
+		return (List<T>) Arrays.asList(instances);
+	}
+	
+	private void createAll(Supplier<?> supplier, Object[] instances, int from, int to) {
+		for(int i = from; i < to; i++) {
+			instances[i] = supplier.get();
+		}
+		
+		if(loaderInjectors == null) {
+			InjectEngine.get().runAll(instances, from, to, planLookup, this, listener, maxInjectDepth, null);
+			return;
+		}
+		
+		for(int i = from; i < to; i++) { //instances may be of foreign loaders
+			if(instances[i] != null) {
+				inject(instances[i]);
+			}
+		}
+	}
+	
+	private AbstractProvider tryCreateDefaultProvider(Class<?> clazz, Parameter parameter, List<Class<?>> classes) {
+		final DefaultProvider defaultProvider = tryCreateDefaultProvider(InjectKind.getDependType(parameter), classes);
+		if(defaultProvider != null && defaultProvider.isProvideFor(clazz, parameter)) {
+			return defaultProvider;
+		}
+		return null;
 	}
 	
 	private AbstractProvider tryCreateDefaultProvider(Class<?> clazz, Field field, List<Class<?>> classes) {
@@ -152,7 +743,14 @@ public class Injector {
 //			}
 //		}
 		
-		final Class<?> type = field.getType();
+		final DefaultProvider defaultProvider = tryCreateDefaultProvider(InjectKind.getDependType(field), classes);
+		if(defaultProvider != null && defaultProvider.isProvideFor(clazz, field)) {
+			return defaultProvider;
+		}
+		return null;
+	}
+	
+	private DefaultProvider tryCreateDefaultProvider(Class<?> type, List<Class<?>> classes) {
 		Class<?> impl;
 		try {
 			impl = ClassUtils.getChildOf(type, classes, false);
@@ -160,95 +758,488 @@ public class Injector {
 			return null;
 		}
 		
-		final DefaultProvider defaultProvider = new DefaultProvider(impl);
-		if(defaultProvider.isProvideFor(clazz, field)) {
-			return defaultProvider;
-		}
-		return null;
+		return getDefaultProvider(impl);
 	}
 	
-	public void inject(Object instance) {
-		final Class<?> clazz = instance.getClass();
+	/**
+	 * Resolves all bound implementations of element type, in bind order.
+	 * @param keyType key type of map, ignored for other kinds
+	 */
+	private MultiProvider createMultiProvider(InjectKind kind, Class<?> elementType, Class<?> keyType) {
+		if(kind == InjectKind.MAP) {
+			return createMapProvider(elementType, keyType);
+		}
 		
-		final Map<Field, AbstractProvider> classInjects = binds.get(clazz);
-		if(classInjects == null) {
-			return;
+		final ArrayList<AbstractProvider> elements = new ArrayList<>();
+		for(int i = 0; i < resolveClasses.size(); i++) {
+			final Class<?> impl = resolveClasses.get(i);
+			if(elementType.isAssignableFrom(impl) && isBindable(impl)) {
+				elements.add(getClassProvider(impl));
+			}
+		}
+		return new MultiProvider(kind, elementType, elements.toArray(new AbstractProvider[elements.size()]));
+	}
+	
+	/**
+	 * Resolves all {@link NamedScope} providers of element type by its names, first provider of name wins.
+	 * Names which are not constants of enum key type are skipped.
+	 * @return map provider or null if key type is not {@link String} or enum
+	 */
+	private MultiProvider createMapProvider(Class<?> elementType, Class<?> keyType) {
+		if(keyType != String.class && !keyType.isEnum()) {
+			return null;
 		}
 		
-		for(Map.Entry<Field, AbstractProvider> entry : classInjects.entrySet()) {
-			final Field injectField = entry.getKey();
-			final AbstractProvider provider = entry.getValue();
-			final ProviderContext context = new ProviderContext(injectField, instance);
-			
-			Object dependInstance;
-			injectField.setAccessible(true);
-			try {
-				dependInstance = provider.provide(context);
-			} catch(RuntimeException e) {
-				listener.onFailedProvideDepend(injectField, provider.getDepend(), e);
+		final Map<Object, AbstractProvider> elements = new LinkedHashMap<>();
+		for(int i = 0; i < scannedProviders.size(); i++) {
+			final AbstractProvider provider = scannedProviders.get(i);
+			if(!(provider instanceof NamedScopeProvider)) {
 				continue;
 			}
 			
-			inject(dependInstance);
+			final AbstractProvider endPoint = provider.flatten();
+			final Class<?> type = getProvidedType(endPoint);
+			if(type == null || !elementType.isAssignableFrom(type)) {
+				continue;
+			}
 			
-			try {
-				injectField.set(instance, dependInstance);
-			} catch(ReflectiveOperationException e) {
-				listener.onFailedInject(injectField, dependInstance);
+			final Object key = toKey(keyType, ((NamedScopeProvider) provider).getName());
+			if(key != null) {
+				elements.putIfAbsent(key, endPoint);
 			}
 		}
+		
+		return new MultiProvider(elementType, keyType, elements.keySet().toArray(),
+				elements.values().toArray(new AbstractProvider[elements.size()]));
 	}
 	
-	private List<AbstractProvider> getProviders(List<Class<?>> classes) {
-		final ArrayList<AbstractProvider> providerChains = new ArrayList<>();
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object toKey(Class<?> keyType, String name) {
+		if(keyType == String.class) {
+			return name;
+		}
+		
+		try {
+			return Enum.valueOf((Class) keyType, name);
+		} catch(IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return type of depend which is given by end-point provider
+	 */
+	private static Class<?> getProvidedType(AbstractProvider provider) {
+		if(provider.isClassDepend()) {
+			return provider.getClassDepend();
+		} else if(provider.isMethodDepend()) {
+			return provider.getMethodDepend().getReturnType();
+		} else if(provider.isFieldDepend()) {
+			return provider.getFieldDepend().getType();
+		}
+		return null;
+	}
+	
+	/**
+	 * @return flatten provider which creates class, scoped provider (e.g. singleton) is preferred
+	 */
+	private AbstractProvider getClassProvider(Class<?> impl) {
+		for(int i = 0; i < scannedProviders.size(); i++) {
+			final AbstractProvider provider = scannedProviders.get(i);
+			if(provider.getDepend() == impl) {
+				return provider.flatten();
+			}
+		}
+		return getDefaultProvider(impl);
+	}
+	
+	private DefaultProvider getDefaultProvider(Object depend) {
+		for(Injector injector = this; injector != null; injector = injector.parent) {
+			final DefaultProvider provider = injector.defaultProviders.get(depend);
+			if(provider != null) {
+				return provider;
+			}
+		}
+		
+		final DefaultProvider provider = new DefaultProvider(depend);
+		defaultProviders.put(depend, provider);
+		return provider;
+	}
+	
+	private SingletonProvider getSingletonProvider(Object depend) {
+		for(Injector injector = this; injector != null; injector = injector.parent) {
+			final SingletonProvider provider = injector.singletonProviders.get(depend);
+			if(provider != null) {
+				return provider;
+			}
+		}
+		
+		final SingletonProvider provider = new SingletonProvider(depend, null);
+		singletonProviders.put(depend, provider);
+		return provider;
+	}
+	
+	private static Class<?> getDeclaringClass(Object depend) {
+		return depend instanceof Member ? ((Member) depend).getDeclaringClass() : (Class<?>) depend;
+	}
+	
+	public void setMaxInjectDepth(int maxInjectDepth) {
+		if(maxInjectDepth < 0) {
+			throw new IllegalArgumentException("Negative inject depth: " + maxInjectDepth);
+		}
+		this.maxInjectDepth = maxInjectDepth;
+	}
+	
+	@Override
+	public void inject(Object instance) {
+		inject(instance, null);
+	}
+	
+	/**
+	 * Injects instance and accumulates traversal stats of inject.
+	 * @throws IllegalStateException if depth of injected depends exceeds {@link #getMaxInjectDepth()}
+	 */
+	public void inject(Object instance, InjectStats stats) {
+		if(loaderInjectors != null) {
+			final Injector injector = loaderInjectors.get(instance.getClass());
+			if(injector != this) {
+				injector.inject(instance, stats);
+				return;
+			}
+		}
+		
+		InjectEngine.get().run(instance, planLookup, this, listener, maxInjectDepth, stats);
+	}
+	
+	/**
+	 * Injects static fields of own classes which binds are changed since last call, so each static field is injected once
+	 * after bind instead of inject of each instance. Static fields are never injected with instances.
+	 * In weak loaders mode static fields of foreign classes are injected too.
+	 */
+	public void injectStatics() {
+		injectStatics(null);
+	}
+	
+	/**
+	 * Injects static fields and accumulates traversal stats of inject.
+	 * @see #injectStatics()
+	 */
+	public synchronized void injectStatics(InjectStats stats) {
+		final List<Class<?>> classes = new ArrayList<>(dirtyStatics);
+		dirtyStatics.clear();
+		for(int i = 0; i < classes.size(); i++) {
+			final InjectPlan plan = staticBinds.get(classes.get(i));
+			if(plan != null && plan.size() != 0) {
+				InjectEngine.get().runStatic(plan, planLookup, this, listener, maxInjectDepth, stats);
+			}
+		}
+		
+		if(loaderInjectors != null) {
+			loaderInjectors.forEachChild(child -> child.injectStatics(stats));
+		}
+	}
+	
+	/**
+	 * Destroys singletons created by providers of this injector, see {@link #close(Executor, long, TimeUnit)}.
+	 * Singletons are destroyed in common fork join pool, waits at most {@link #DEFAULT_CLOSE_TIMEOUT_MILLIS}.
+	 */
+	@Override
+	public void close() {
+		close(ForkJoinPool.commonPool(), DEFAULT_CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Calls {@link PreDestroy} methods of singletons created by providers of this injector and releases singletons.
+	 * Singleton is destroyed after all singletons which depend on it, independent singletons are destroyed in parallel by executor.
+	 * In weak loaders mode singletons of child injectors are destroyed first.
+	 * Failed callbacks are reported to listener.
+	 * @return true if all singletons are destroyed before timeout
+	 */
+	public synchronized boolean close(@NonNull Executor executor, long timeout, @NonNull TimeUnit unit) {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		boolean isCompleted = true;
+		if(loaderInjectors != null) {
+			final List<Injector> children = new ArrayList<>();
+			loaderInjectors.forEachChild(children::add);
+			for(int i = 0; i < children.size(); i++) {
+				isCompleted &= children.get(i).close(executor, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			}
+		}
+		
+		final SingletonShutdown shutdown = new SingletonShutdown(planLookup, this::getFactory, listener);
+		for(List<AbstractProvider> providers : classProviders.values()) {
+			for(int i = 0; i < providers.size(); i++) {
+				shutdown.addProvider(providers.get(i));
+			}
+		}
+		for(DefaultProvider provider : defaultProviders.values()) {
+			shutdown.addProvider(provider);
+		}
+		for(SingletonProvider provider : singletonProviders.values()) {
+			shutdown.addProvider(provider);
+		}
+		for(InjectPlan plan : binds.values()) {
+			shutdown.addPlan(plan);
+		}
+		for(InjectPlan plan : staticBinds.values()) {
+			shutdown.addPlan(plan);
+		}
+		for(ConstructorFactory factory : factories.values()) {
+			shutdown.addFactory(factory);
+		}
+		
+		try {
+			return shutdown.run(executor, deadline - System.nanoTime(), TimeUnit.NANOSECONDS) && isCompleted;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Collects reflection metadata of all binds (including static binds) and constructor factories for native-image build.
+	 */
+	public synchronized ReflectionConfig getReflectionConfig() {
+		final ReflectionConfig config = new ReflectionConfig();
+		for(Map.Entry<Class<?>, InjectPlan> entry : getAllBinds().entrySet()) {
+			config.addPlan(entry.getKey(), entry.getValue());
+		}
+		
+		for(Injector injector = this; injector != null; injector = injector.parent) {
+			for(Map.Entry<Class<?>, InjectPlan> entry : injector.staticBinds.entrySet()) {
+				config.addPlan(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		for(ConstructorFactory factory : getAllFactories().values()) {
+			config.addFactory(factory);
+		}
+		return config;
+	}
+	
+	/**
+	 * @see #prefetch(Executor, boolean)
+	 */
+	public CompletableFuture<Void> prefetch(boolean isDryRun) {
+		return prefetch(ForkJoinPool.commonPool(), isDryRun);
+	}
+	
+	/**
+	 * Initializes classes referenced by resolved binds in background after autoBind, so first inject doesn't pay
+	 * for class loading and static initializers. Prefetch is best effort: failed classes are skipped and fail later on inject.
+	 * In weak loaders mode classes of child injectors are prefetched too.
+	 * @param isDryRun also creates and drops one instance of each class which is created by unscoped provider on each provide,
+	 * so its constructor is linked before first inject
+	 * @return future which is completed when all classes are processed
+	 */
+	public CompletableFuture<Void> prefetch(@NonNull Executor executor, boolean isDryRun) {
+		final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		final ReflectionConfig config = getReflectionConfig();
+		final List<Class<?>> classes = config.getClasses();
+		final Set<Class<?>> created = config.getCreatedClasses();
 		for(int i = 0; i < classes.size(); i++) {
 			final Class<?> clazz = classes.get(i);
-			final int modifiers = clazz.getModifiers();
-			if(ClassUtils.isAbstractClass(clazz) || !Modifier.isPublic(modifiers) || clazz.isSynthetic()) {
+			if(!clazz.isPrimitive()) {
+				final boolean isCreate = isDryRun && created.contains(clazz);
+				tasks.add(CompletableFuture.runAsync(() -> prefetch(clazz, isCreate), executor));
+			}
+		}
+		
+		if(loaderInjectors != null) {
+			loaderInjectors.forEachChild(child -> tasks.add(child.prefetch(executor, isDryRun)));
+		}
+		return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()]));
+	}
+	
+	private static void prefetch(Class<?> clazz, boolean isCreate) {
+		try {
+			Class.forName(clazz.getName(), true, clazz.getClassLoader());
+			if(isCreate) {
+				clazz.getConstructor().newInstance();
+			}
+		} catch(ReflectiveOperationException | LinkageError | RuntimeException e) { //reported by inject
+		}
+	}
+	
+	/**
+	 * Creates immutable snapshot of all binds of this injector (and its parents).
+	 * Later changes of this injector doesn't affect snapshot.
+	 */
+	public synchronized FrozenInjector freeze() {
+		return new FrozenInjector(getAllBinds(), getAllStaticBinds(), getAllFactories(), listener, maxInjectDepth);
+	}
+	
+	/**
+	 * @return binds of this injector merged with binds of parents
+	 */
+	private Map<Class<?>, InjectPlan> getAllBinds() {
+		final Map<Class<?>, InjectPlan> allBinds = new LinkedHashMap<>();
+		for(Injector injector = this; injector != null; injector = injector.parent) {
+			for(Map.Entry<Class<?>, InjectPlan> entry : injector.binds.entrySet()) {
+				allBinds.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+		return allBinds;
+	}
+	
+	/**
+	 * @return static binds of this injector and parents, each class once
+	 */
+	private Map<Class<?>, InjectPlan> getAllStaticBinds() {
+		final Map<Class<?>, InjectPlan> allBinds = new LinkedHashMap<>();
+		for(Injector injector = this; injector != null; injector = injector.parent) {
+			for(Map.Entry<Class<?>, InjectPlan> entry : injector.staticBinds.entrySet()) {
+				allBinds.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+		return allBinds;
+	}
+	
+	private Map<Class<?>, ConstructorFactory> getAllFactories() {
+		final Map<Class<?>, ConstructorFactory> allFactories = new LinkedHashMap<>();
+		for(Injector injector = this; injector != null; injector = injector.parent) {
+			for(Map.Entry<Class<?>, ConstructorFactory> entry : injector.factories.entrySet()) {
+				allFactories.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+		return allFactories;
+	}
+	
+	/**
+	 * Builds snapshot of current binds for analysis and export.
+	 */
+	public synchronized DependencyGraph getDependencyGraph() {
+		final DependencyGraph graph = new DependencyGraph();
+		for(Map.Entry<Class<?>, InjectPlan> entry : getAllBinds().entrySet()) {
+			final InjectPlan plan = entry.getValue();
+			for(int i = 0; i < plan.size(); i++) {
+				graph.addDependency(entry.getKey(), plan.getField(i).getName(), false, false, plan.getProvider(i));
+			}
+		}
+		
+		for(Map.Entry<Class<?>, InjectPlan> entry : getAllStaticBinds().entrySet()) {
+			final InjectPlan plan = entry.getValue();
+			for(int i = 0; i < plan.size(); i++) {
+				graph.addDependency(entry.getKey(), plan.getField(i).getName(), false, true, plan.getProvider(i));
+			}
+		}
+		
+		for(Map.Entry<Class<?>, ConstructorFactory> entry : getAllFactories().entrySet()) {
+			final ConstructorFactory factory = entry.getValue();
+			final Parameter[] parameters = factory.getConstructor().getParameters();
+			final AbstractProvider[] arguments = factory.getArguments();
+			for(int i = 0; i < arguments.length; i++) {
+				graph.addDependency(entry.getKey(), parameters[i].getName(), true, false, arguments[i]);
+			}
+		}
+		
+		graph.analyze(scannedProviders);
+		return graph;
+	}
+	
+	/**
+	 * Estimates memory retained by binds tables of this injector and providers of its binds, each shared provider is counted once.
+	 * Estimation is for 64-bit jvm with compressed references.
+	 * @return estimated size in bytes
+	 */
+	public long getBindsFootprint() {
+		long footprint = 48 + InjectPlan.align(16 + 4L * binds.size() * 2); //map with table
+		final Map<AbstractProvider, Boolean> counted = new IdentityHashMap<>();
+		for(InjectPlan plan : binds.values()) {
+			footprint += 32; //map node
+			if(plan == InjectPlan.EMPTY) {
 				continue;
 			}
 			
-			providerChains.addAll(createChains(getPointcut(clazz, clazz, clazz.getAnnotations())));
-			
-			final Method[] methods = clazz.getDeclaredMethods();
-			for(int j = 0; j < methods.length; j++) {
-				final Method method = methods[j];
-				providerChains.addAll(createChains(getPointcut(clazz, method, method.getAnnotations())));
+			footprint += plan.getFootprint();
+			for(int i = 0; i < plan.size(); i++) {
+				footprint += getProvidersFootprint(plan.getProvider(i), counted);
 			}
-			
-			final Field[] fields = clazz.getDeclaredFields();
-			for(int j = 0; j < fields.length; j++) {
-				final Field field = fields[j];
-				providerChains.addAll(createChains(getPointcut(clazz, field, field.getAnnotations())));
+		}
+		return footprint;
+	}
+	
+	private static long getProvidersFootprint(AbstractProvider provider, Map<AbstractProvider, Boolean> counted) {
+		long footprint = 0;
+		for(AbstractProvider p = provider; p != null && counted.put(p, Boolean.TRUE) == null; p = p.getNext()) {
+			footprint += PROVIDER_FOOTPRINT;
+			if(p instanceof LazyProvider) {
+				footprint += getProvidersFootprint(((LazyProvider) p).getProvider(), counted);
+			} else if(p instanceof MultiProvider) {
+				final AbstractProvider[] elements = ((MultiProvider) p).getElements();
+				for(int i = 0; i < elements.length; i++) {
+					footprint += getProvidersFootprint(elements[i], counted);
+				}
 			}
 		}
+		return footprint;
+	}
+	
+	private List<AbstractProvider> getProviders(Class<?> clazz) {
+		if(!isBindable(clazz)) {
+			return Collections.emptyList();
+		}
+		
+		final ArrayList<AbstractProvider> providerChains = new ArrayList<>();
+		final ClassMeta meta = ClassMeta.of(clazz);
+		for(int i = 0; i < meta.getScopedCount(); i++) { //class, its methods and fields
+			providerChains.addAll(createChains(getPointcut(clazz, meta.getScopedMember(i), meta.getScopes(i))));
+		}
+		
+		setModule(clazz, providerChains);
 		return providerChains;
 	}
 	
+	/**
+	 * Links depends of non static methods and fields to one provider of class: scoped provider of class if it has
+	 * or shared default provider, so all depends use same instance of class.
+	 */
+	private static void setModule(Class<?> clazz, List<AbstractProvider> providerChains) {
+		AbstractProvider module = null;
+		for(int i = 0; i < providerChains.size(); i++) {
+			final AbstractProvider chain = providerChains.get(i);
+			if(chain.getDepend() == clazz) {
+				module = chain.flatten();
+				break;
+			}
+		}
+		
+		for(int i = 0; i < providerChains.size(); i++) {
+			final AbstractProvider provider = providerChains.get(i).flatten();
+			final Object depend = provider.getDepend();
+			if(!(provider instanceof DefaultProvider) || !(depend instanceof Member) || Modifier.isStatic(((Member) depend).getModifiers())) {
+				continue;
+			}
+			
+			if(module == null) {
+				module = new DefaultProvider(clazz);
+			}
+			((DefaultProvider) provider).setModule(module);
+		}
+	}
+	
 	private List<AbstractProvider> getPointcut(Class<?> owner, Object depend, Annotation[] annotations) {
 		final ArrayList<AbstractProvider> pointcut = new ArrayList<>();
 		for(int i = 0; i < annotations.length; i++) {
 			final Annotation annotation = annotations[i];
+			final Class<? extends Annotation> annotationType = annotation.annotationType();
+			final ScopeMeta meta = ScopeMeta.of(annotationType);
 			
-			if(annotation.annotationType().isAnnotationPresent(RepeatableScope.class)) {
-				try {
-					final Method valueMethod = annotation.annotationType().getDeclaredMethod("value");
-					final Object value = valueMethod.invoke(annotation);
-					if(value instanceof Annotation[]) {
-						pointcut.addAll(getPointcut(owner, depend, (Annotation[]) value));
-					}
-				} catch (ReflectiveOperationException e) {
+			if(meta.isRepeatable()) {
+				final Annotation[] repeated = meta.getRepeated(annotation);
+				if(repeated != null) {
+					pointcut.addAll(getPointcut(owner, depend, repeated));
 				}
-				
 				continue;
 			}
 			
-			if(!annotation.annotationType().isAnnotationPresent(Scope.class)) {
+			if(!meta.isScope()) {
 				continue;
 			}
 			
-			for(int j = 0; j < rules.size(); j++) {
-				final IProviderRule rule = rules.get(j);
+			final IProviderRule[] scopeRules = getRules(annotationType);
+			for(int j = 0; j < scopeRules.length; j++) {
+				final IProviderRule rule = scopeRules[j];
 				if(!rule.isSupportScope(owner, annotation)) {
 					continue;
 				}
@@ -260,6 +1251,28 @@ public class Injector {
 		return pointcut;
 	}
 	
+	/**
+	 * @return rules which may support scope annotation type in order of addition
+	 */
+	private IProviderRule[] getRules(Class<? extends Annotation> annotationType) {
+		IProviderRule[] scopeRules = rulesIndex.get(annotationType);
+		if(scopeRules != null) {
+			return scopeRules;
+		}
+		
+		final ArrayList<IProviderRule> list = new ArrayList<>();
+		for(int i = 0; i < rules.size(); i++) {
+			final IProviderRule rule = rules.get(i);
+			final Class<? extends Annotation> ruleScope = rule.getScopeAnnotation();
+			if(ruleScope == null || ruleScope == annotationType) {
+				list.add(rule);
+			}
+		}
+		
+		rulesIndex.put(annotationType, scopeRules = list.toArray(new IProviderRule[list.size()]));
+		return scopeRules;
+	}
+	
 	private List<AbstractProvider> createChains(List<AbstractProvider> pointcut) {
 		if(pointcut.isEmpty()) {
 			return Collections.emptyList();
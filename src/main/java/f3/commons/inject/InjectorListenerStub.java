@@ -16,6 +16,8 @@
 package f3.commons.inject;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 
 /**
  * @author n3k0nation
@@ -30,6 +32,10 @@ class InjectorListenerStub implements IInjectorListener {
 	public void onBindNotFound(Class<?> injectClass, Field injectField) {	
 	}
 	
+	@Override
+	public void onBindNotFound(Class<?> injectClass, Parameter injectParameter) {
+	}
+	
 	@Override
 	public void onFailedInject(Field injectField, Object dependInstance) {
 	}
@@ -38,4 +44,8 @@ class InjectorListenerStub implements IInjectorListener {
 	public void onFailedProvideDepend(Field injectField, Object depend, RuntimeException e) {
 	}
 	
+	@Override
+	public void onFailedLifecycle(Object instance, Method method, Throwable e) {
+	}
+
 }
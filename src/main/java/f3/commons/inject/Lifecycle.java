@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cached lifecycle methods of class, resolved once per class for whole process.
+ * @author n3k0nation
+ *
+ */
+final class Lifecycle {
+	private final static Lifecycle NONE = new Lifecycle(new Method[0], new Method[0]);
+	private final static ClassValue<Lifecycle> cache = new ClassValue<Lifecycle>() {
+		@Override
+		protected Lifecycle computeValue(Class<?> type) {
+			return create(type);
+		}
+	};
+	
+	/** superclass methods first */
+	private final Method[] postConstruct;
+	/** subclass methods first */
+	private final Method[] preDestroy;
+	
+	private Lifecycle(Method[] postConstruct, Method[] preDestroy) {
+		this.postConstruct = postConstruct;
+		this.preDestroy = preDestroy;
+	}
+	
+	static Lifecycle of(Class<?> type) {
+		return cache.get(type);
+	}
+	
+	boolean hasPostConstruct() {
+		return postConstruct.length != 0;
+	}
+	
+	boolean hasPreDestroy() {
+		return preDestroy.length != 0;
+	}
+	
+	/**
+	 * @return post construct methods, array is shared and must not be changed
+	 */
+	Method[] getPostConstruct() {
+		return postConstruct;
+	}
+	
+	/**
+	 * @return pre destroy methods, array is shared and must not be changed
+	 */
+	Method[] getPreDestroy() {
+		return preDestroy;
+	}
+	
+	void postConstruct(Object instance, IInjectorListener listener) {
+		invoke(postConstruct, instance, listener);
+	}
+	
+	void preDestroy(Object instance, IInjectorListener listener) {
+		invoke(preDestroy, instance, listener);
+	}
+	
+	private static void invoke(Method[] methods, Object instance, IInjectorListener listener) {
+		for(int i = 0; i < methods.length; i++) {
+			try {
+				methods[i].invoke(instance);
+			} catch(ReflectiveOperationException | RuntimeException e) {
+				listener.onFailedLifecycle(instance, methods[i], e);
+			}
+		}
+	}
+	
+	private static Lifecycle create(Class<?> type) {
+		final List<Method> postConstruct = new ArrayList<>();
+		final List<Method> preDestroy = new ArrayList<>();
+		for(Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			final Method[] methods = clazz.getDeclaredMethods();
+			for(int i = 0; i < methods.length; i++) {
+				final Method method = methods[i];
+				if(Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0 || isOverridden(method, type)) {
+					continue;
+				}
+				
+				if(isAnnotated(method, "PostConstruct")) {
+					method.setAccessible(true);
+					postConstruct.add(method);
+				} else if(isAnnotated(method, "PreDestroy")) {
+					method.setAccessible(true);
+					preDestroy.add(method);
+				}
+			}
+		}
+		
+		if(postConstruct.isEmpty() && preDestroy.isEmpty()) {
+			return NONE;
+		}
+		
+		Collections.reverse(postConstruct);
+		return new Lifecycle(postConstruct.toArray(new Method[postConstruct.size()]), preDestroy.toArray(new Method[preDestroy.size()]));
+	}
+	
+	/**
+	 * @return true if method is overridden by subclass between declaring class and type, overrider is called instead
+	 */
+	private static boolean isOverridden(Method method, Class<?> type) {
+		if(Modifier.isPrivate(method.getModifiers())) {
+			return false;
+		}
+		
+		for(Class<?> clazz = type; clazz != method.getDeclaringClass(); clazz = clazz.getSuperclass()) {
+			try {
+				clazz.getDeclaredMethod(method.getName());
+				return true;
+			} catch(NoSuchMethodException e) {
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isAnnotated(Method method, String simpleName) {
+		final Annotation[] annotations = method.getDeclaredAnnotations();
+		for(int i = 0; i < annotations.length; i++) {
+			final Class<? extends Annotation> type = annotations[i].annotationType();
+			if(!type.getSimpleName().equals(simpleName)) {
+				continue;
+			}
+			
+			final String name = type.getName();
+			if(name.startsWith("f3.commons.inject.") || name.startsWith("javax.annotation.") || name.startsWith("jakarta.annotation.")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
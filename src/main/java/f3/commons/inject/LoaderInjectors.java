@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Child injectors of foreign class loaders. Child is strongly reachable only from classes of its loader,
+ * so it is collected together with unreachable loader: its binds, singletons and classes doesn't leak.
+ * Classes of home loader (and its parents) are bound to home injector.
+ * @author n3k0nation
+ *
+ */
+final class LoaderInjectors extends ClassValue<Injector> {
+	private final Injector home;
+	private final ClassLoader homeLoader;
+	/** creates child of home injector for class loader */
+	private final BiFunction<Injector, ClassLoader, Injector> childFactory;
+	private final Map<ClassLoader, WeakReference<Injector>> children = new WeakHashMap<>();
+	
+	LoaderInjectors(Injector home, ClassLoader homeLoader, BiFunction<Injector, ClassLoader, Injector> childFactory) {
+		this.home = home;
+		this.homeLoader = homeLoader;
+		this.childFactory = childFactory;
+	}
+	
+	@Override
+	protected Injector computeValue(Class<?> type) {
+		final ClassLoader loader = type.getClassLoader();
+		if(isHome(loader)) {
+			return home;
+		}
+		
+		synchronized(children) {
+			final WeakReference<Injector> reference = children.get(loader);
+			Injector child = reference == null ? null : reference.get();
+			if(child == null) {
+				child = childFactory.apply(home, loader);
+				children.put(loader, new WeakReference<>(child));
+			}
+			return child;
+		}
+	}
+	
+	void forEachChild(Consumer<Injector> action) {
+		final List<Injector> alive = new ArrayList<>();
+		synchronized(children) {
+			for(WeakReference<Injector> reference : children.values()) {
+				final Injector child = reference.get();
+				if(child != null) {
+					alive.add(child);
+				}
+			}
+		}
+		
+		for(int i = 0; i < alive.size(); i++) {
+			action.accept(alive.get(i));
+		}
+	}
+	
+	boolean isHome(Class<?> type) {
+		return isHome(type.getClassLoader());
+	}
+	
+	private boolean isHome(ClassLoader loader) {
+		if(loader == null) { //bootstrap
+			return true;
+		}
+		
+		for(ClassLoader l = homeLoader; l != null; l = l.getParent()) {
+			if(l == loader) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
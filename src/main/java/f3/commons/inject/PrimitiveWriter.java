@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.DefaultProvider;
+
+/**
+ * Flatten provider of primitive inject field which source is static field or static method without parameters of same type.
+ * Value is copied by primitive accessors without boxing, static final source is folded to constant on bind.
+ * Value is kept in long, floating types as its raw bits.
+ * @author n3k0nation
+ *
+ */
+final class PrimitiveWriter extends AbstractProvider {
+	private final Field target;
+	/** descriptor of primitive type */
+	private final char type;
+	private final Field sourceField;
+	private final MethodHandle sourceMethod;
+	private final boolean isConstant;
+	private final long constant;
+	
+	private PrimitiveWriter(Field target, Object depend, Field sourceField, MethodHandle sourceMethod) throws Throwable {
+		super(depend);
+		this.target = target;
+		this.type = descriptorOf(target.getType());
+		this.sourceField = sourceField;
+		this.sourceMethod = sourceMethod;
+		isConstant = sourceField != null && Modifier.isFinal(sourceField.getModifiers());
+		constant = isConstant ? read() : 0;
+	}
+	
+	/**
+	 * @param provider flatten provider of field
+	 * @return primitive writer or provider itself if field is not primitive or its source is not supported
+	 */
+	static AbstractProvider of(Field target, AbstractProvider provider) {
+		final Class<?> type = target.getType();
+		if(!type.isPrimitive() || provider.getClass() != DefaultProvider.class) {
+			return provider;
+		}
+		
+		try {
+			if(provider.isFieldDepend()) {
+				final Field source = provider.getFieldDepend();
+				if(source.getType() != type || !Modifier.isStatic(source.getModifiers())) {
+					return provider;
+				}
+				
+				source.setAccessible(true);
+				return new PrimitiveWriter(target, source, source, null);
+			}
+			
+			if(provider.isMethodDepend()) {
+				final Method source = provider.getMethodDepend();
+				if(source.getReturnType() != type || !Modifier.isStatic(source.getModifiers()) || source.getParameterCount() != 0) {
+					return provider;
+				}
+				
+				source.setAccessible(true);
+				return new PrimitiveWriter(target, source, null, MethodHandles.lookup().unreflect(source));
+			}
+		} catch(Throwable e) { //constant is not readable on bind, generic path reports it on inject
+		}
+		return provider;
+	}
+	
+	private static char descriptorOf(Class<?> type) {
+		if(type == int.class) {
+			return 'I';
+		} else if(type == long.class) {
+			return 'J';
+		} else if(type == double.class) {
+			return 'D';
+		} else if(type == float.class) {
+			return 'F';
+		} else if(type == boolean.class) {
+			return 'Z';
+		} else if(type == byte.class) {
+			return 'B';
+		} else if(type == short.class) {
+			return 'S';
+		} else if(type == char.class) {
+			return 'C';
+		}
+		throw new IllegalArgumentException("Not primitive type " + type);
+	}
+	
+	/**
+	 * Copies value of source to field of instance (or static field if instance is null).
+	 */
+	void write(Object instance, IInjectorListener listener) {
+		final long value;
+		try {
+			value = isConstant ? constant : read();
+		} catch(RuntimeException e) {
+			listener.onFailedProvideDepend(target, getDepend(), e);
+			return;
+		} catch(Throwable e) {
+			listener.onFailedProvideDepend(target, getDepend(), new RuntimeException(e));
+			return;
+		}
+		
+		try {
+			switch(type) {
+				case 'I': target.setInt(instance, (int) value); break;
+				case 'J': target.setLong(instance, value); break;
+				case 'D': target.setDouble(instance, Double.longBitsToDouble(value)); break;
+				case 'F': target.setFloat(instance, Float.intBitsToFloat((int) value)); break;
+				case 'Z': target.setBoolean(instance, value != 0); break;
+				case 'B': target.setByte(instance, (byte) value); break;
+				case 'S': target.setShort(instance, (short) value); break;
+				case 'C': target.setChar(instance, (char) value); break;
+			}
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			listener.onFailedInject(target, box(value));
+		}
+	}
+	
+	private long read() throws Throwable {
+		if(sourceField != null) {
+			switch(type) {
+				case 'I': return sourceField.getInt(null);
+				case 'J': return sourceField.getLong(null);
+				case 'D': return Double.doubleToRawLongBits(sourceField.getDouble(null));
+				case 'F': return Float.floatToRawIntBits(sourceField.getFloat(null));
+				case 'Z': return sourceField.getBoolean(null) ? 1 : 0;
+				case 'B': return sourceField.getByte(null);
+				case 'S': return sourceField.getShort(null);
+				default: return sourceField.getChar(null);
+			}
+		}
+		
+		switch(type) {
+			case 'I': return (int) sourceMethod.invokeExact();
+			case 'J': return (long) sourceMethod.invokeExact();
+			case 'D': return Double.doubleToRawLongBits((double) sourceMethod.invokeExact());
+			case 'F': return Float.floatToRawIntBits((float) sourceMethod.invokeExact());
+			case 'Z': return (boolean) sourceMethod.invokeExact() ? 1 : 0;
+			case 'B': return (byte) sourceMethod.invokeExact();
+			case 'S': return (short) sourceMethod.invokeExact();
+			default: return (char) sourceMethod.invokeExact();
+		}
+	}
+	
+	private Object box(long value) {
+		switch(type) {
+			case 'I': return (int) value;
+			case 'J': return value;
+			case 'D': return Double.longBitsToDouble(value);
+			case 'F': return Float.intBitsToFloat((int) value);
+			case 'Z': return value != 0;
+			case 'B': return (byte) value;
+			case 'S': return (short) value;
+			default: return (char) value;
+		}
+	}
+	
+	/**
+	 * Boxed value for generic callers, inject uses {@link #write(Object, IInjectorListener)}.
+	 */
+	@Override
+	public Object provide(ProviderContext context) {
+		try {
+			return box(isConstant ? constant : read());
+		} catch(RuntimeException | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Field field) {
+		return false; //created by plan only
+	}
+	
+	@Override
+	public int getPriority(Class<?> clazz, Field field) {
+		return Integer.MAX_VALUE;
+	}
+}
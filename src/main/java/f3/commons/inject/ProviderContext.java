@@ -17,16 +17,34 @@ package f3.commons.inject;
 
 import java.lang.reflect.Field;
 
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 /**
+ * Inject point for which provider gives depend.
+ * Injector reuses contexts between provide calls, so provider must not keep context after provide (copy it instead).
  * @author n3k0nation
  *
  */
-@RequiredArgsConstructor
+@AllArgsConstructor
 @Getter
+@Setter(AccessLevel.PACKAGE)
 public class ProviderContext {
-	private final Field target;
-	private final Object targetInstance;
+	private Field target;
+	private Object targetInstance;
+	/** injector which performs inject, depends created by provider are injected by it */
+	private IInjector injector;
+	
+	/**
+	 * Context without injector, depends created by provider are not injected.
+	 */
+	public ProviderContext(Field target, Object targetInstance) {
+		this(target, targetInstance, null);
+	}
+	
+	public ProviderContext copy() {
+		return new ProviderContext(target, targetInstance, injector);
+	}
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.ConstructorFactory;
+import f3.commons.inject.providers.DefaultProvider;
+import f3.commons.inject.providers.LazyProvider;
+import f3.commons.inject.providers.MultiProvider;
+import f3.commons.inject.providers.SingletonProvider;
+
+/**
+ * Reflection metadata of all classes, constructors, methods and fields which are touched by resolved binds,
+ * in format of GraalVM native-image reflect-config.json.
+ * @author n3k0nation
+ *
+ */
+public final class ReflectionConfig {
+	private static class Type {
+		private boolean isAllPublicConstructors;
+		private boolean isAllDeclaredMethods;
+		private final Set<String> fields = new LinkedHashSet<>();
+		private final Set<String> methods = new LinkedHashSet<>();
+	}
+	
+	private final Map<Class<?>, Type> types = new LinkedHashMap<>();
+	private final Map<AbstractProvider, Boolean> visited = new IdentityHashMap<>();
+	/** classes which instances are created by default constructor on each provide */
+	private final Set<Class<?>> created = new LinkedHashSet<>();
+	
+	ReflectionConfig() {
+	}
+	
+	private Type getType(Class<?> clazz) {
+		while(clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		
+		Type type = types.get(clazz);
+		if(type == null) {
+			types.put(clazz, type = new Type());
+			addLifecycle(Lifecycle.of(clazz));
+		}
+		return type;
+	}
+	
+	/**
+	 * Lifecycle methods are called reflectively on each created instance, including superclass methods.
+	 */
+	private void addLifecycle(Lifecycle lifecycle) {
+		final Method[] postConstruct = lifecycle.getPostConstruct();
+		for(int i = 0; i < postConstruct.length; i++) {
+			addExecutable(postConstruct[i]);
+		}
+		
+		final Method[] preDestroy = lifecycle.getPreDestroy();
+		for(int i = 0; i < preDestroy.length; i++) {
+			addExecutable(preDestroy[i]);
+		}
+	}
+	
+	/**
+	 * @param owner class which instances are injected by plan
+	 */
+	void addPlan(Class<?> owner, InjectPlan plan) {
+		getType(owner);
+		try {
+			addExecutable(owner.getDeclaredConstructor()); //created by newInstance
+		} catch(NoSuchMethodException e) {
+		}
+		
+		for(int i = 0; i < plan.size(); i++) {
+			addField(plan.getField(i));
+			addProvider(plan.getProvider(i));
+		}
+	}
+	
+	void addFactory(ConstructorFactory factory) {
+		addExecutable(factory.getConstructor());
+		final AbstractProvider[] arguments = factory.getArguments();
+		for(int i = 0; i < arguments.length; i++) {
+			addProvider(arguments[i]);
+		}
+	}
+	
+	void addProvider(AbstractProvider provider) {
+		if(visited.put(provider, Boolean.TRUE) != null) {
+			return;
+		}
+		
+		if(provider instanceof LazyProvider) {
+			addProvider(((LazyProvider) provider).getProvider());
+			return;
+		}
+		
+		if(provider instanceof MultiProvider) {
+			final MultiProvider multiProvider = (MultiProvider) provider;
+			getType(multiProvider.getClassDepend());
+			if(multiProvider.getKeyType() != null) {
+				getType(multiProvider.getKeyType());
+			}
+			
+			final AbstractProvider[] elements = multiProvider.getElements();
+			for(int i = 0; i < elements.length; i++) {
+				addProvider(elements[i]);
+			}
+			return;
+		}
+		
+		if(provider.getNext() != null) {
+			addProvider(provider.getNext());
+		}
+		
+		if(provider.isClassDepend()) {
+			final Type type = getType(provider.getClassDepend());
+			type.isAllPublicConstructors = true;
+			if(provider instanceof SingletonProvider) { //singleton instance lookup
+				type.isAllDeclaredMethods = true;
+			} else if(provider.getClass() == DefaultProvider.class) {
+				created.add(provider.getClassDepend());
+			}
+		} else if(provider.isMethodDepend()) {
+			final Method method = provider.getMethodDepend();
+			addExecutable(method);
+			addInvoker(method.getDeclaringClass(), method.getModifiers());
+		} else if(provider.isFieldDepend()) {
+			final Field field = provider.getFieldDepend();
+			addField(field);
+			addInvoker(field.getDeclaringClass(), field.getModifiers());
+		}
+	}
+	
+	private void addInvoker(Class<?> clazz, int modifiers) {
+		if(!Modifier.isStatic(modifiers)) {
+			getType(clazz).isAllPublicConstructors = true;
+		}
+	}
+	
+	void addField(Field field) {
+		getType(field.getType());
+		getType(field.getDeclaringClass()).fields.add(field.getName());
+	}
+	
+	void addExecutable(Executable executable) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\"name\":").append(quote(executable instanceof Constructor ? "<init>" : executable.getName()));
+		sb.append(",\"parameterTypes\":[");
+		final Class<?>[] parameterTypes = executable.getParameterTypes();
+		for(int i = 0; i < parameterTypes.length; i++) {
+			if(i != 0) {
+				sb.append(',');
+			}
+			sb.append(quote(parameterTypes[i].getName()));
+			getType(parameterTypes[i]);
+		}
+		sb.append("]}");
+		getType(executable.getDeclaringClass()).methods.add(sb.toString());
+	}
+	
+	/**
+	 * @return classes of metadata
+	 */
+	public List<Class<?>> getClasses() {
+		return new ArrayList<>(types.keySet());
+	}
+	
+	/**
+	 * @return classes which instances are created by unscoped providers on each provide
+	 */
+	Set<Class<?>> getCreatedClasses() {
+		return created;
+	}
+	
+	public String toJson() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		boolean isFirst = true;
+		for(Map.Entry<Class<?>, Type> entry : types.entrySet()) {
+			final Class<?> clazz = entry.getKey();
+			final Type type = entry.getValue();
+			if(clazz.isPrimitive()) {
+				continue;
+			}
+			
+			sb.append(isFirst ? "\n" : ",\n");
+			isFirst = false;
+			sb.append("{\"name\":").append(quote(clazz.getName()));
+			if(type.isAllPublicConstructors) {
+				sb.append(",\"allPublicConstructors\":true");
+			}
+			if(type.isAllDeclaredMethods) {
+				sb.append(",\"allDeclaredMethods\":true");
+			}
+			
+			if(!type.fields.isEmpty()) {
+				sb.append(",\"fields\":[");
+				int i = 0;
+				for(String field : type.fields) {
+					if(i++ != 0) {
+						sb.append(',');
+					}
+					sb.append("{\"name\":").append(quote(field)).append(",\"allowWrite\":true}");
+				}
+				sb.append(']');
+			}
+			
+			if(!type.methods.isEmpty()) {
+				sb.append(",\"methods\":[").append(String.join(",", type.methods)).append(']');
+			}
+			sb.append('}');
+		}
+		sb.append("\n]\n");
+		return sb.toString();
+	}
+	
+	public void write(Writer writer) throws IOException {
+		writer.write(toJson());
+		writer.flush();
+	}
+	
+	private static String quote(String value) {
+		return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+}
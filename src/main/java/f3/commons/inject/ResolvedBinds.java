@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.ConstructorFactory;
+import f3.commons.inject.providers.DefaultProvider;
+import f3.commons.inject.providers.LazyProvider;
+import f3.commons.inject.providers.MultiProvider;
+import f3.commons.inject.providers.SingletonProvider;
+import f3.commons.inject.providers.UnitScopeProvider;
+
+/**
+ * Text form of resolved binds of {@link FrozenInjector}, which is loaded without scanning and resolve.
+ * Each line is tab separated record:
+ * <pre>
+ * provider id default|singleton|unit depend [moduleProviderId]
+ * provider id lazy providerId memoized
+ * provider id multi kind elementType keyType|- count providerIds... keys...
+ * bind class field providerId
+ * static class field providerId
+ * factory class parameterTypes... - providerIds...
+ * </pre>
+ * Depend is class:name, method:class#name#parameterTypes... or field:class#name.
+ * Module provider gives instance of declaring class of non static method or field depend.
+ * Only default, singleton, unit, lazy and multi providers are supported, scope providers are flatten on bind.
+ * @author n3k0nation
+ *
+ */
+final class ResolvedBinds {
+	private final static String HEADER = "# f3 inject resolved binds v1";
+	private final static Map<String, Class<?>> primitives = new HashMap<>();
+	static {
+		final Class<?>[] types = { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class, void.class };
+		for(int i = 0; i < types.length; i++) {
+			primitives.put(types[i].getName(), types[i]);
+		}
+	}
+	
+	private final Map<AbstractProvider, Integer> ids = new IdentityHashMap<>();
+	private final StringBuilder sb = new StringBuilder();
+	
+	private ResolvedBinds() {
+	}
+	
+	static void write(ClassTable<InjectPlan> plans, Map<Class<?>, InjectPlan> staticBinds, ClassTable<ConstructorFactory> factories,
+			Writer writer) throws IOException {
+		final ResolvedBinds binds = new ResolvedBinds();
+		binds.sb.append(HEADER).append('\n');
+		plans.forEach((clazz, plan) -> binds.plan("bind", clazz, plan));
+		staticBinds.forEach((clazz, plan) -> binds.plan("static", clazz, plan));
+		
+		factories.forEach((clazz, factory) -> {
+			final List<String> tokens = new ArrayList<>();
+			tokens.add("factory");
+			tokens.add(clazz.getName());
+			final Class<?>[] parameterTypes = factory.getConstructor().getParameterTypes();
+			for(int i = 0; i < parameterTypes.length; i++) {
+				tokens.add(parameterTypes[i].getName());
+			}
+			tokens.add("-");
+			
+			final AbstractProvider[] arguments = factory.getArguments();
+			for(int i = 0; i < arguments.length; i++) {
+				tokens.add(Integer.toString(binds.idOf(arguments[i].flatten())));
+			}
+			binds.line(tokens.toArray(new String[tokens.size()]));
+		});
+		
+		writer.write(binds.sb.toString());
+		writer.flush();
+	}
+	
+	private void plan(String record, Class<?> clazz, InjectPlan plan) {
+		for(int i = 0; i < plan.size(); i++) {
+			final Field field = plan.getField(i);
+			final int id = idOf(plan.getProvider(i).flatten());
+			line(record, clazz.getName(), field.getDeclaringClass().getName() + '#' + field.getName(), Integer.toString(id));
+		}
+	}
+	
+	/**
+	 * @return id of provider, provider (and its inner and module providers) is written before first use
+	 */
+	private int idOf(AbstractProvider provider) {
+		Integer id = ids.get(provider);
+		if(id != null) {
+			return id;
+		}
+		
+		final String[] tokens;
+		if(provider instanceof LazyProvider) {
+			final LazyProvider lazyProvider = (LazyProvider) provider;
+			final int inner = idOf(lazyProvider.getProvider());
+			tokens = new String[] { "lazy", Integer.toString(inner), Boolean.toString(lazyProvider.isMemoized()) };
+		} else if(provider instanceof MultiProvider) {
+			final MultiProvider multiProvider = (MultiProvider) provider;
+			final AbstractProvider[] elements = multiProvider.getElements();
+			final Object[] keys = multiProvider.getKeys();
+			final List<String> list = new ArrayList<>();
+			list.add("multi");
+			list.add(multiProvider.getKind().name());
+			list.add(multiProvider.getClassDepend().getName());
+			list.add(multiProvider.getKeyType() == null ? "-" : multiProvider.getKeyType().getName());
+			list.add(Integer.toString(elements.length));
+			for(int i = 0; i < elements.length; i++) {
+				list.add(Integer.toString(idOf(elements[i])));
+			}
+			for(int i = 0; keys != null && i < keys.length; i++) {
+				list.add(escape(keys[i] instanceof Enum ? ((Enum<?>) keys[i]).name() : keys[i].toString()));
+			}
+			tokens = list.toArray(new String[list.size()]);
+		} else if(provider.getClass() == SingletonProvider.class) {
+			tokens = withModule((DefaultProvider) provider, "singleton", describe(provider));
+		} else if(provider.getClass() == UnitScopeProvider.class) {
+			tokens = withModule((DefaultProvider) provider, "unit", describe(provider));
+		} else if(provider.getClass() == DefaultProvider.class) {
+			tokens = withModule((DefaultProvider) provider, "default", describe(provider));
+		} else {
+			throw new IllegalStateException("Provider " + provider.getClass().getName() + " can't be written as resolved bind");
+		}
+		
+		id = ids.size();
+		ids.put(provider, id);
+		
+		final String[] line = new String[tokens.length + 2];
+		line[0] = "provider";
+		line[1] = Integer.toString(id);
+		System.arraycopy(tokens, 0, line, 2, tokens.length);
+		line(line);
+		return id;
+	}
+	
+	private String[] withModule(DefaultProvider provider, String kind, String depend) {
+		final AbstractProvider module = provider.getModule();
+		if(module == null) {
+			return new String[] { kind, depend };
+		}
+		return new String[] { kind, depend, Integer.toString(idOf(module)) };
+	}
+	
+	private static String describe(AbstractProvider provider) {
+		if(provider.isClassDepend()) {
+			return "class:" + provider.getClassDepend().getName();
+		}
+		
+		if(provider.isMethodDepend()) {
+			final Method method = provider.getMethodDepend();
+			final StringBuilder sb = new StringBuilder("method:");
+			sb.append(method.getDeclaringClass().getName()).append('#').append(method.getName());
+			final Class<?>[] parameterTypes = method.getParameterTypes();
+			for(int i = 0; i < parameterTypes.length; i++) {
+				sb.append('#').append(parameterTypes[i].getName());
+			}
+			return sb.toString();
+		}
+		
+		if(provider.isFieldDepend()) {
+			final Field field = provider.getFieldDepend();
+			return "field:" + field.getDeclaringClass().getName() + '#' + field.getName();
+		}
+		
+		throw new IllegalStateException("Unknown depend " + provider.getDepend());
+	}
+	
+	private void line(String... tokens) {
+		for(int i = 0; i < tokens.length; i++) {
+			if(i != 0) {
+				sb.append('\t');
+			}
+			sb.append(tokens[i]);
+		}
+		sb.append('\n');
+	}
+	
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+	}
+	
+	private static String unescape(String value) {
+		final StringBuilder sb = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if(c != '\\' || i + 1 == value.length()) {
+				sb.append(c);
+				continue;
+			}
+			
+			final char next = value.charAt(++i);
+			sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+		}
+		return sb.toString();
+	}
+	
+	static FrozenInjector read(Reader reader, ClassLoader loader, IInjectorListener listener) throws IOException {
+		final BufferedReader br = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		if(!HEADER.equals(br.readLine())) {
+			throw new IOException("Not resolved binds");
+		}
+		
+		final List<AbstractProvider> providers = new ArrayList<>();
+		final Map<Class<?>, InjectPlan> plans = new LinkedHashMap<>();
+		final Map<Class<?>, InjectPlan> staticBinds = new LinkedHashMap<>();
+		final Map<Class<?>, ConstructorFactory> factories = new LinkedHashMap<>();
+		try {
+			for(String line; (line = br.readLine()) != null;) {
+				if(line.isEmpty()) {
+					continue;
+				}
+				
+				final String[] tokens = line.split("\t", -1);
+				switch(tokens[0]) {
+					case "provider":
+						if(Integer.parseInt(tokens[1]) != providers.size()) {
+							throw new IOException("Unordered provider " + tokens[1]);
+						}
+						providers.add(readProvider(tokens, providers, loader));
+						break;
+					case "bind":
+						readBind(tokens, plans, providers, loader);
+						break;
+					case "static":
+						readBind(tokens, staticBinds, providers, loader);
+						break;
+					case "factory": {
+						final Class<?> clazz = forName(tokens[1], loader);
+						int i = 2;
+						final List<Class<?>> parameterTypes = new ArrayList<>();
+						for(; !tokens[i].equals("-"); i++) {
+							parameterTypes.add(forName(tokens[i], loader));
+						}
+						
+						final Constructor<?> constructor = clazz.getDeclaredConstructor(parameterTypes.toArray(new Class<?>[parameterTypes.size()]));
+						final AbstractProvider[] arguments = new AbstractProvider[parameterTypes.size()];
+						for(int j = 0; j < arguments.length; j++) {
+							arguments[j] = providers.get(Integer.parseInt(tokens[++i]));
+						}
+						factories.put(clazz, new ConstructorFactory(constructor, arguments));
+						break;
+					}
+					default:
+						if(!line.startsWith("#")) {
+							throw new IOException("Unknown record " + tokens[0]);
+						}
+				}
+			}
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			throw new IOException("Can't read resolved binds", e);
+		}
+		
+		return new FrozenInjector(plans, staticBinds, factories, listener, Injector.DEFAULT_MAX_INJECT_DEPTH);
+	}
+	
+	private static void readBind(String[] tokens, Map<Class<?>, InjectPlan> plans, List<AbstractProvider> providers, ClassLoader loader)
+			throws ReflectiveOperationException {
+		final Class<?> clazz = forName(tokens[1], loader);
+		final Field field = readField(tokens[2], loader);
+		final AbstractProvider provider = providers.get(Integer.parseInt(tokens[3]));
+		plans.put(clazz, plans.getOrDefault(clazz, InjectPlan.EMPTY).with(field, provider));
+	}
+	
+	private static AbstractProvider readProvider(String[] tokens, List<AbstractProvider> providers, ClassLoader loader) throws ReflectiveOperationException {
+		switch(tokens[2]) {
+			case "default":
+				return withModule(new DefaultProvider(readDepend(tokens[3], loader)), tokens, providers);
+			case "singleton":
+				return withModule(new SingletonProvider(readDepend(tokens[3], loader), null), tokens, providers);
+			case "unit":
+				return withModule(new UnitScopeProvider(readDepend(tokens[3], loader), null), tokens, providers);
+			case "lazy":
+				return new LazyProvider(providers.get(Integer.parseInt(tokens[3])), Boolean.parseBoolean(tokens[4]));
+			case "multi": {
+				final InjectKind kind = InjectKind.valueOf(tokens[3]);
+				final Class<?> elementType = forName(tokens[4], loader);
+				final Class<?> keyType = tokens[5].equals("-") ? null : forName(tokens[5], loader);
+				final int count = Integer.parseInt(tokens[6]);
+				final AbstractProvider[] elements = new AbstractProvider[count];
+				for(int i = 0; i < count; i++) {
+					elements[i] = providers.get(Integer.parseInt(tokens[7 + i]));
+				}
+				
+				if(keyType == null) {
+					return new MultiProvider(kind, elementType, elements);
+				}
+				
+				final Object[] keys = new Object[count];
+				for(int i = 0; i < count; i++) {
+					keys[i] = toKey(keyType, unescape(tokens[7 + count + i]));
+				}
+				return new MultiProvider(elementType, keyType, keys, elements);
+			}
+			default:
+				throw new IllegalArgumentException("Unknown provider " + tokens[2]);
+		}
+	}
+	
+	private static DefaultProvider withModule(DefaultProvider provider, String[] tokens, List<AbstractProvider> providers) {
+		if(tokens.length > 4) {
+			provider.setModule(providers.get(Integer.parseInt(tokens[4])));
+		}
+		return provider;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object toKey(Class<?> keyType, String name) {
+		return keyType.isEnum() ? Enum.valueOf((Class) keyType, name) : name;
+	}
+	
+	private static Object readDepend(String depend, ClassLoader loader) throws ReflectiveOperationException {
+		final int index = depend.indexOf(':');
+		final String kind = depend.substring(0, index);
+		final String value = depend.substring(index + 1);
+		switch(kind) {
+			case "class":
+				return forName(value, loader);
+			case "field":
+				return readField(value, loader);
+			case "method": {
+				final String[] parts = value.split("#");
+				final Class<?>[] parameterTypes = new Class<?>[parts.length - 2];
+				for(int i = 0; i < parameterTypes.length; i++) {
+					parameterTypes[i] = forName(parts[i + 2], loader);
+				}
+				return forName(parts[0], loader).getDeclaredMethod(parts[1], parameterTypes);
+			}
+			default:
+				throw new IllegalArgumentException("Unknown depend " + depend);
+		}
+	}
+	
+	private static Field readField(String value, ClassLoader loader) throws ReflectiveOperationException {
+		final int index = value.indexOf('#');
+		return forName(value.substring(0, index), loader).getDeclaredField(value.substring(index + 1));
+	}
+	
+	private static Class<?> forName(String name, ClassLoader loader) throws ClassNotFoundException {
+		final Class<?> primitive = primitives.get(name);
+		return primitive != null ? primitive : Class.forName(name, false, loader);
+	}
+}
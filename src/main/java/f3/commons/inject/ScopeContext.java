@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+
+/**
+ * Unit of work (e.g. game tick or request) of current thread which caches {@link UnitScope} depends.
+ * Depends are kept in small open addressing table keyed by identity of unit scoped provider, so lookup is few array accesses
+ * instead of map lookup and nothing is kept after scope is closed.
+ * Closing scope calls {@link PreDestroy} methods of cached depends in reverse order of creation and releases them at once.
+ * <pre>
+ * try(ScopeContext scope = ScopeContext.open()) {
+ *     injector.inject(handler);
+ * }
+ * </pre>
+ * Scopes are nested per thread: opened scope hides outer scope until it is closed.
+ * @author n3k0nation
+ *
+ */
+public final class ScopeContext implements AutoCloseable {
+	private final static ThreadLocal<ScopeContext> current = new ThreadLocal<>();
+	private final static int INITIAL_CAPACITY = 16;
+	
+	private final ScopeContext outer;
+	private final IInjectorListener listener;
+	/** keys and values of table, capacity is power of two and table is at most half full */
+	private Object[] keys = new Object[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	/** depends in order of creation */
+	private Object[] created = new Object[8];
+	private int size;
+	
+	private ScopeContext(ScopeContext outer, IInjectorListener listener) {
+		this.outer = outer;
+		this.listener = listener;
+	}
+	
+	/**
+	 * Opens scope on current thread, failed destroy callbacks are ignored.
+	 */
+	public static ScopeContext open() {
+		return open(new InjectorListenerStub());
+	}
+	
+	/**
+	 * Opens scope on current thread.
+	 * @param listener receives failed destroy callbacks on close
+	 */
+	public static ScopeContext open(@NonNull IInjectorListener listener) {
+		final ScopeContext scope = new ScopeContext(current.get(), listener);
+		current.set(scope);
+		return scope;
+	}
+	
+	/**
+	 * @return innermost open scope of current thread or null
+	 */
+	public static ScopeContext current() {
+		return current.get();
+	}
+	
+	/**
+	 * @param key unit scoped provider, compared by identity
+	 * @return cached depend of key or null
+	 */
+	public Object get(Object key) {
+		final Object[] keys = this.keys;
+		final int mask = keys.length - 1;
+		for(int i = System.identityHashCode(key) & mask; keys[i] != null; i = (i + 1) & mask) {
+			if(keys[i] == key) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param key unit scoped provider, compared by identity
+	 */
+	public void put(@NonNull Object key, @NonNull Object instance) {
+		final int mask = keys.length - 1;
+		int i = System.identityHashCode(key) & mask;
+		for(; keys[i] != null; i = (i + 1) & mask) {
+			if(keys[i] == key) {
+				values[i] = instance;
+				return;
+			}
+		}
+		
+		keys[i] = key;
+		values[i] = instance;
+		if(size == created.length) {
+			created = Arrays.copyOf(created, size << 1);
+		}
+		created[size++] = instance;
+		if(size << 1 > keys.length) {
+			rehash(keys.length << 1);
+		}
+	}
+	
+	private void rehash(int capacity) {
+		final Object[] oldKeys = keys;
+		final Object[] oldValues = values;
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		
+		final int mask = capacity - 1;
+		for(int j = 0; j < oldKeys.length; j++) {
+			final Object key = oldKeys[j];
+			if(key == null) {
+				continue;
+			}
+			
+			int i = System.identityHashCode(key) & mask;
+			while(keys[i] != null) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = oldValues[j];
+		}
+	}
+	
+	/**
+	 * @return count of cached depends
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Closes scope and makes outer scope current.
+	 * @throws IllegalStateException if scope is not innermost scope of current thread
+	 */
+	@Override
+	public void close() {
+		if(current.get() != this) {
+			throw new IllegalStateException("Scope is not innermost open scope of current thread");
+		}
+		
+		if(outer == null) {
+			current.remove();
+		} else {
+			current.set(outer);
+		}
+		
+		for(int i = size - 1; i >= 0; i--) {
+			final Object instance = created[i];
+			final Lifecycle lifecycle = Lifecycle.of(instance.getClass());
+			if(lifecycle.hasPreDestroy()) {
+				lifecycle.preDestroy(instance, listener);
+			}
+		}
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		Arrays.fill(created, 0, size, null);
+		size = 0;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import javax.inject.Scope;
+
+/**
+ * Cached meta-annotations of annotation type, resolved once per annotation type for whole process.
+ * @author n3k0nation
+ *
+ */
+final class ScopeMeta {
+	private final static ScopeMeta NONE = new ScopeMeta(false, null);
+	private final static ClassValue<ScopeMeta> cache = new ClassValue<ScopeMeta>() {
+		@Override
+		protected ScopeMeta computeValue(Class<?> type) {
+			return create(type);
+		}
+	};
+	
+	private final boolean isScope;
+	/** value() of {@link RepeatableScope} container, null if annotation is not container */
+	private final MethodHandle valueHandle;
+	
+	private ScopeMeta(boolean isScope, MethodHandle valueHandle) {
+		this.isScope = isScope;
+		this.valueHandle = valueHandle;
+	}
+	
+	public static ScopeMeta of(Class<? extends Annotation> annotationType) {
+		return cache.get(annotationType);
+	}
+	
+	private static ScopeMeta create(Class<?> type) {
+		if(type.isAnnotationPresent(RepeatableScope.class)) {
+			try {
+				final Method valueMethod = type.getDeclaredMethod("value");
+				valueMethod.setAccessible(true);
+				final MethodHandle handle = MethodHandles.lookup().unreflect(valueMethod)
+						.asType(MethodType.methodType(Object.class, Object.class));
+				return new ScopeMeta(false, handle);
+			} catch (ReflectiveOperationException e) {
+				return NONE;
+			}
+		}
+		
+		if(type.isAnnotationPresent(Scope.class)) {
+			return new ScopeMeta(true, null);
+		}
+		
+		return NONE;
+	}
+	
+	public boolean isScope() {
+		return isScope;
+	}
+	
+	public boolean isRepeatable() {
+		return valueHandle != null;
+	}
+	
+	/**
+	 * @return repeated scopes of container annotation or null if container value is not annotations
+	 */
+	public Annotation[] getRepeated(Annotation container) {
+		final Object value;
+		try {
+			value = (Object) valueHandle.invokeExact((Object) container);
+		} catch(Throwable e) {
+			return null;
+		}
+		
+		return value instanceof Annotation[] ? (Annotation[]) value : null;
+	}
+}
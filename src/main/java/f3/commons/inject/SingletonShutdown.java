@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.ConstructorFactory;
+import f3.commons.inject.providers.DefaultProvider;
+import f3.commons.inject.providers.LazyProvider;
+import f3.commons.inject.providers.MultiProvider;
+import f3.commons.inject.providers.SingletonProvider;
+
+/**
+ * Destroys created singletons in reverse dependency order: singleton is destroyed only after all singletons
+ * which depend on it. Independent singletons are destroyed in parallel.
+ * Cyclic dependencies are broken at the edge which closes cycle.
+ * @author n3k0nation
+ *
+ */
+final class SingletonShutdown {
+	private final Function<Class<?>, InjectPlan> plans;
+	private final Function<Class<?>, ConstructorFactory> factories;
+	private final IInjectorListener listener;
+	private final Map<SingletonProvider, Node> nodes = new LinkedHashMap<>();
+	private final Set<AbstractProvider> collected = new HashSet<>();
+	
+	private Executor executor;
+	private CountDownLatch latch;
+	
+	SingletonShutdown(Function<Class<?>, InjectPlan> plans, Function<Class<?>, ConstructorFactory> factories, IInjectorListener listener) {
+		this.plans = plans;
+		this.factories = factories;
+		this.listener = listener;
+	}
+	
+	private final static class Node {
+		private final SingletonProvider provider;
+		private final Object instance;
+		/** singletons which this singleton depends on */
+		private final List<Node> dependencies = new ArrayList<>();
+		/** count of not destroyed singletons which depend on this singleton */
+		private final AtomicInteger dependents = new AtomicInteger();
+		/** 0 - not visited, 1 - on dfs path, 2 - visited */
+		private int mark;
+		
+		Node(SingletonProvider provider, Object instance) {
+			this.provider = provider;
+			this.instance = instance;
+		}
+	}
+	
+	/**
+	 * Registers created singletons of provider chain (including wrapped and multi providers).
+	 */
+	void addProvider(AbstractProvider provider) {
+		for(AbstractProvider p = provider; p != null; p = p.getNext()) {
+			if(!collected.add(p)) {
+				return;
+			}
+			
+			if(p instanceof LazyProvider) {
+				addProvider(((LazyProvider) p).getProvider());
+			} else if(p instanceof MultiProvider) {
+				final AbstractProvider[] elements = ((MultiProvider) p).getElements();
+				for(int i = 0; i < elements.length; i++) {
+					addProvider(elements[i]);
+				}
+			} else if(p instanceof DefaultProvider) {
+				if(p instanceof SingletonProvider) {
+					final SingletonProvider singletonProvider = (SingletonProvider) p;
+					final Object instance = singletonProvider.getSingleton();
+					if(instance != null && !nodes.containsKey(singletonProvider)) {
+						nodes.put(singletonProvider, new Node(singletonProvider, instance));
+					}
+				}
+				
+				final AbstractProvider module = ((DefaultProvider) p).getModule();
+				if(module != null) { //singleton of declaring class
+					addProvider(module);
+				}
+			}
+		}
+	}
+	
+	void addPlan(InjectPlan plan) {
+		for(int i = 0; i < plan.size(); i++) {
+			addProvider(plan.getProvider(i));
+		}
+	}
+	
+	void addFactory(ConstructorFactory factory) {
+		final AbstractProvider[] arguments = factory.getArguments();
+		for(int i = 0; i < arguments.length; i++) {
+			addProvider(arguments[i]);
+		}
+	}
+	
+	/**
+	 * @return true if all singletons are destroyed before timeout
+	 */
+	boolean run(Executor executor, long timeout, TimeUnit unit) throws InterruptedException {
+		final Collection<Node> all = nodes.values();
+		for(Node node : all) {
+			collectDependencies(node);
+		}
+		
+		for(Node node : all) {
+			breakCycles(node);
+		}
+		
+		for(Node node : all) {
+			for(int i = 0; i < node.dependencies.size(); i++) {
+				node.dependencies.get(i).dependents.incrementAndGet();
+			}
+		}
+		
+		this.executor = executor;
+		latch = new CountDownLatch(all.size());
+		final List<Node> roots = new ArrayList<>();
+		for(Node node : all) {
+			if(node.dependents.get() == 0) {
+				roots.add(node);
+			}
+		}
+		
+		for(int i = 0; i < roots.size(); i++) {
+			schedule(roots.get(i));
+		}
+		return latch.await(timeout, unit);
+	}
+	
+	private void collectDependencies(Node node) {
+		final Set<Class<?>> visited = new HashSet<>();
+		final Set<Node> result = new HashSet<>();
+		collectClass(node.instance.getClass(), visited, result);
+		result.remove(node);
+		node.dependencies.addAll(result);
+	}
+	
+	/**
+	 * Collects singletons which are injected to instances of class, directly or through non-singleton depends.
+	 */
+	private void collectClass(Class<?> clazz, Set<Class<?>> visited, Set<Node> result) {
+		if(!visited.add(clazz)) {
+			return;
+		}
+		
+		final InjectPlan plan = plans.apply(clazz);
+		for(int i = 0; i < plan.size(); i++) {
+			collectProvider(plan.getProvider(i), visited, result);
+		}
+		
+		final ConstructorFactory factory = factories.apply(clazz);
+		if(factory != null) {
+			final AbstractProvider[] arguments = factory.getArguments();
+			for(int i = 0; i < arguments.length; i++) {
+				collectProvider(arguments[i], visited, result);
+			}
+		}
+	}
+	
+	private void collectProvider(AbstractProvider provider, Set<Class<?>> visited, Set<Node> result) {
+		for(AbstractProvider p = provider; p != null; p = p.getNext()) {
+			if(p instanceof LazyProvider) {
+				collectProvider(((LazyProvider) p).getProvider(), visited, result);
+			} else if(p instanceof MultiProvider) {
+				final AbstractProvider[] elements = ((MultiProvider) p).getElements();
+				for(int i = 0; i < elements.length; i++) {
+					collectProvider(elements[i], visited, result);
+				}
+			} else if(p instanceof SingletonProvider && nodes.containsKey(p)) {
+				result.add(nodes.get(p));
+			} else if(p instanceof DefaultProvider) {
+				final AbstractProvider module = ((DefaultProvider) p).getModule();
+				if(module instanceof SingletonProvider && nodes.containsKey(module)) { //invoker is singleton
+					result.add(nodes.get(module));
+				} else if(p.isClassDepend()) {
+					collectClass(p.getClassDepend(), visited, result);
+				} else if(p.isMethodDepend()) { //invoker of method
+					collectClass(p.getMethodDepend().getDeclaringClass(), visited, result);
+				} else if(p.isFieldDepend()) {
+					collectClass(p.getFieldDepend().getDeclaringClass(), visited, result);
+				}
+			}
+		}
+	}
+	
+	private void breakCycles(Node node) {
+		if(node.mark != 0) {
+			return;
+		}
+		
+		node.mark = 1;
+		for(int i = node.dependencies.size() - 1; i >= 0; i--) {
+			final Node dependency = node.dependencies.get(i);
+			if(dependency.mark == 1) { //back edge
+				node.dependencies.remove(i);
+				continue;
+			}
+			breakCycles(dependency);
+		}
+		node.mark = 2;
+	}
+	
+	private void schedule(Node node) {
+		if(!Lifecycle.of(node.instance.getClass()).hasPreDestroy()) {
+			destroy(node);
+			return;
+		}
+		
+		try {
+			executor.execute(() -> destroy(node));
+		} catch(RejectedExecutionException e) {
+			destroy(node);
+		}
+	}
+	
+	private void destroy(Node node) {
+		try {
+			Lifecycle.of(node.instance.getClass()).preDestroy(node.instance, listener);
+			node.provider.release();
+		} finally {
+			latch.countDown();
+			for(int i = 0; i < node.dependencies.size(); i++) {
+				final Node dependency = node.dependencies.get(i);
+				if(dependency.dependents.decrementAndGet() == 0) {
+					schedule(dependency);
+				}
+			}
+		}
+	}
+}
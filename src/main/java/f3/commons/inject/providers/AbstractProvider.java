@@ -17,6 +17,7 @@ package f3.commons.inject.providers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 
 import f3.commons.inject.ProviderContext;
 import lombok.Getter;
@@ -29,7 +30,7 @@ import lombok.Setter;
 public abstract class AbstractProvider {
 
 	@Getter private final Object depend;
-	@Setter private AbstractProvider next;
+	@Getter @Setter private AbstractProvider next;
 	
 	public AbstractProvider(Object depend) {
 		this.depend = depend;
@@ -43,6 +44,14 @@ public abstract class AbstractProvider {
 		return false;
 	}
 	
+	public boolean isProvideFor(Class<?> clazz, Parameter parameter) {
+		if(next != null) {
+			return next.isProvideFor(clazz, parameter);
+		}
+		
+		return false;
+	}
+	
 	public Object provide(ProviderContext context) {
 		if(next != null) {
 			return next.provide(context);
@@ -50,8 +59,30 @@ public abstract class AbstractProvider {
 		return null;
 	}
 	
+	/**
+	 * @return true if instance given by this provider is already injected and must not be injected again by caller
+	 */
+	public boolean isInjected(Object instance) {
+		if(next != null) {
+			return next.isInjected(instance);
+		}
+		
+		return false;
+	}
+	
 	public abstract int getPriority(Class<?> clazz, Field field);
 	
+	/**
+	 * @return provider which gives same depends as this chain on provide, used after bind when matching is not needed
+	 */
+	public AbstractProvider flatten() {
+		return this;
+	}
+	
+	public int getPriority(Class<?> clazz, Parameter parameter) {
+		return getPriority(clazz, (Field) null);
+	}
+	
 	public boolean isClassDepend() {
 		return depend instanceof Class;
 	}
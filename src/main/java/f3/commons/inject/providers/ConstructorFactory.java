@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject.providers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+
+import f3.commons.inject.IInjector;
+import f3.commons.inject.ProviderContext;
+import lombok.Getter;
+
+/**
+ * Compiled {@link javax.inject.Inject} constructor of class with providers of all arguments resolved on bind.
+ * Creates instance fully wired in one call.
+ * @author n3k0nation
+ *
+ */
+public class ConstructorFactory {
+	
+	@Getter private final Constructor<?> constructor;
+	private final AbstractProvider[] arguments;
+	/** flatten arguments providers, used on provide */
+	private final AbstractProvider[] targets;
+	private final MethodHandle handle;
+	
+	public ConstructorFactory(Constructor<?> constructor, AbstractProvider[] arguments) throws IllegalAccessException {
+		this.constructor = constructor;
+		this.arguments = arguments;
+		
+		targets = new AbstractProvider[arguments.length];
+		for(int i = 0; i < arguments.length; i++) {
+			targets[i] = arguments[i].flatten();
+		}
+		
+		constructor.setAccessible(true);
+		final int count = arguments.length;
+		handle = MethodHandles.lookup().unreflectConstructor(constructor)
+				.asType(MethodType.genericMethodType(count))
+				.asSpreader(Object[].class, count);
+	}
+	
+	public AbstractProvider[] getArguments() {
+		return arguments.clone();
+	}
+	
+	/**
+	 * @param context context of inject point for which depend is created, arguments are injected by its injector
+	 */
+	public Object newInstance(ProviderContext context) {
+		final IInjector injector = context.getInjector();
+		final ProviderContext argumentContext = new ProviderContext(null, context.getTargetInstance(), injector);
+		final Object[] args = new Object[arguments.length];
+		for(int i = 0; i < args.length; i++) {
+			final Object arg = targets[i].provide(argumentContext);
+			if(arg != null && !targets[i].isInjected(arg)) {
+				injector.inject(arg);
+			}
+			args[i] = arg;
+		}
+		
+		try {
+			return (Object) handle.invokeExact(args);
+		} catch(RuntimeException | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -19,8 +19,13 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
 
+import f3.commons.inject.InjectKind;
+import f3.commons.inject.IInjector;
 import f3.commons.inject.ProviderContext;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * End-point provider for all injects.
@@ -28,6 +33,11 @@ import f3.commons.inject.ProviderContext;
  *
  */
 public class DefaultProvider extends AbstractProvider {
+	
+	/** instance of declaring class of non static method or field depend, shared by all provides */
+	private final SharedInstance invoker = new SharedInstance();
+	/** provider of declaring class of non static method or field depend, shared by all depends of class */
+	@Getter @Setter private AbstractProvider module;
 
 	public DefaultProvider(Object depend) {
 		super(depend);
@@ -35,34 +45,49 @@ public class DefaultProvider extends AbstractProvider {
 
 	@Override
 	public boolean isProvideFor(Class<?> injectClass, Field injectField) {
+		return isProvideFor(InjectKind.getDependType(injectField));
+	}
+	
+	private boolean isProvideFor(Class<?> injectType) {
 		if(isClassDepend()) {
-			return injectField.getType().isAssignableFrom(getClassDepend());
+			return injectType.isAssignableFrom(getClassDepend());
 		}
 		
 		if(isMethodDepend()) {
-			return injectField.getType().isAssignableFrom(getMethodDepend().getReturnType());
+			return injectType.isAssignableFrom(getMethodDepend().getReturnType());
 		}
 		
 		if(isFieldDepend()) {
-			return injectField.getType().isAssignableFrom(getFieldDepend().getType());
+			return injectType.isAssignableFrom(getFieldDepend().getType());
 		}
 		
 		return false;
 	}
 	
+	@Override
+	public boolean isProvideFor(Class<?> injectClass, Parameter injectParameter) {
+		return isProvideFor(InjectKind.getDependType(injectParameter));
+	}
+	
 	@Override
 	public Object provide(ProviderContext context) {
 		try {
 			if(isClassDepend()) {
+				final IInjector injector = context.getInjector();
+				final ConstructorFactory factory = injector == null ? null : injector.getFactory(getClassDepend());
+				if(factory != null) {
+					return createFromFactory(factory, context);
+				}
+				
 				return createClass(getClassDepend(), context.getTargetInstance());
 			}
 			
 			if(isMethodDepend()) {
-				return createFromMethod(getMethodDepend(), context.getTargetInstance());
+				return createFromMethod(getMethodDepend(), context);
 			}
 			
 			if(isFieldDepend()) {
-				return createFromField(getFieldDepend(), context.getTargetInstance());
+				return createFromField(getFieldDepend(), context);
 			}
 			
 			throw new RuntimeException("Unknown inject type");
@@ -71,7 +96,16 @@ public class DefaultProvider extends AbstractProvider {
 		}
 	}
 	
+	protected Object createFromFactory(ConstructorFactory factory, ProviderContext context) {
+		return factory.newInstance(context);
+	}
+	
 	protected Object createClass(Class<?> clazz, Object object) throws ReflectiveOperationException {
+		final Constructor<?> constructor = findConstructor(clazz, object);
+		return constructor.getParameterCount() == 0 ? constructor.newInstance() : constructor.newInstance(object);
+	}
+	
+	private static Constructor<?> findConstructor(Class<?> clazz, Object object) throws NoSuchMethodException {
 		Constructor<?> constructor = null;
 		final Constructor<?>[] ctors = clazz.getConstructors();
 		for (int i = 0; i < ctors.length; i++) {
@@ -86,7 +120,7 @@ public class DefaultProvider extends AbstractProvider {
 			}
 
 			Class<?> type = ctor.getParameterTypes()[0];
-			if (type.isAssignableFrom(object.getClass())) {
+			if (object != null && type.isAssignableFrom(object.getClass())) {
 				constructor = ctor;
 				break;
 			}
@@ -96,30 +130,86 @@ public class DefaultProvider extends AbstractProvider {
 			throw new NoSuchMethodException("Not found inject constructor in " + clazz.getCanonicalName());
 		}
 		constructor.setAccessible(true);
-		return constructor.newInstance(object);
+		return constructor;
+	}
+	
+	/**
+	 * Gives instance of declaring class for non static method or field depend.
+	 * Scoped class (e.g. singleton) is given by its module provider, other instance is created once per module
+	 * (by its inject constructor if it bound) and injected, except classes which constructor takes inject target -
+	 * they are created for each provide.
+	 */
+	protected Object getInvoker(Class<?> clazz, ProviderContext context) throws ReflectiveOperationException {
+		final AbstractProvider module = this.module;
+		if(module != null && module.getClass() == DefaultProvider.class) {
+			return ((DefaultProvider) module).getSharedInvoker(clazz, context);
+		}
+		
+		if(module != null) {
+			final Object result = module.provide(context);
+			final IInjector injector = context.getInjector();
+			if(result != null && injector != null && !module.isInjected(result)) {
+				injector.inject(result);
+			}
+			return result;
+		}
+		return getSharedInvoker(clazz, context);
+	}
+	
+	private Object getSharedInvoker(Class<?> clazz, ProviderContext context) throws ReflectiveOperationException {
+		final Object result = invoker.getInstance();
+		if(result != null) {
+			return result;
+		}
+		
+		final IInjector injector = context.getInjector();
+		final ConstructorFactory factory = injector == null ? null : injector.getFactory(clazz);
+		if(factory == null) {
+			final Constructor<?> constructor = findConstructor(clazz, context.getTargetInstance());
+			if(constructor.getParameterCount() != 0) { //invoker depends on target
+				return constructor.newInstance(context.getTargetInstance());
+			}
+		}
+		
+		if(!invoker.acquire()) {
+			return invoker.getAvailable();
+		}
+		
+		Object created = null;
+		try {
+			final Object instance = factory != null ? factory.newInstance(context) : findConstructor(clazz, null).newInstance();
+			invoker.setCreating(instance);
+			if(injector != null) {
+				injector.inject(instance);
+			}
+			created = instance;
+		} finally {
+			invoker.complete(created);
+		}
+		return created;
 	}
 	
-	protected Object createFromMethod(Method method, Object object) throws ReflectiveOperationException {
+	protected Object createFromMethod(Method method, ProviderContext context) throws ReflectiveOperationException {
 		method.setAccessible(true);
 		
 		Object invoker = null;
 		if(!Modifier.isStatic(method.getModifiers())) {
-			invoker = createClass(method.getDeclaringClass(), object);
+			invoker = getInvoker(method.getDeclaringClass(), context);
 		}
 		
 		if(method.getParameterCount() != 0) {
-			return method.invoke(invoker, object);
+			return method.invoke(invoker, context.getTargetInstance());
 		} else {
 			return method.invoke(invoker);
 		}
 	}
 	
-	protected Object createFromField(Field field, Object object) throws ReflectiveOperationException {
+	protected Object createFromField(Field field, ProviderContext context) throws ReflectiveOperationException {
 		field.setAccessible(true);
 		
 		Object invoker = null;
 		if(!Modifier.isStatic(field.getModifiers())) {
-			invoker = createClass(field.getDeclaringClass(), object);
+			invoker = getInvoker(field.getDeclaringClass(), context);
 		}
 		
 		return field.get(invoker);
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject.providers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+
+import javax.inject.Provider;
+
+import f3.commons.inject.Lazy;
+import f3.commons.inject.ProviderContext;
+import lombok.Getter;
+
+/**
+ * Wrapper for resolved provider chain of {@link Provider} and {@link Lazy} fields.
+ * Provides handle instead of depend, depend created and injected only on handle get.
+ * @author n3k0nation
+ *
+ */
+public class LazyProvider extends AbstractProvider {
+	
+	@Getter private final AbstractProvider provider;
+	@Getter private final boolean isMemoized;
+	
+	public LazyProvider(AbstractProvider provider, boolean isMemoized) {
+		super(provider.getDepend());
+		this.provider = provider;
+		this.isMemoized = isMemoized;
+	}
+	
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Field field) {
+		return provider.isProvideFor(clazz, field);
+	}
+	
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Parameter parameter) {
+		return provider.isProvideFor(clazz, parameter);
+	}
+	
+	@Override
+	public Object provide(ProviderContext context) {
+		return new Handle(context.copy());
+	}
+	
+	@Override
+	public AbstractProvider flatten() {
+		final AbstractProvider flatten = provider.flatten();
+		return flatten == provider ? this : new LazyProvider(flatten, isMemoized);
+	}
+	
+	@Override
+	public int getPriority(Class<?> clazz, Field field) {
+		return provider.getPriority(clazz, field);
+	}
+	
+	@Override
+	public int getPriority(Class<?> clazz, Parameter parameter) {
+		return provider.getPriority(clazz, parameter);
+	}
+	
+	private class Handle extends SharedInstance implements Provider<Object>, Lazy<Object> {
+		private final ProviderContext context;
+		
+		Handle(ProviderContext context) {
+			this.context = context;
+		}
+		
+		@Override
+		public Object get() {
+			if(!isMemoized) {
+				return create();
+			}
+			
+			final Object result = getInstance();
+			if(result != null) {
+				return result;
+			}
+			
+			if(!acquire()) {
+				return getAvailable();
+			}
+			
+			Object created = null;
+			try {
+				created = create();
+			} finally {
+				complete(created);
+			}
+			return created;
+		}
+		
+		private Object create() {
+			final Object dependInstance = provider.provide(context);
+			if(dependInstance != null && !provider.isInjected(dependInstance)) {
+				context.getInjector().inject(dependInstance);
+			}
+			return dependInstance;
+		}
+	}
+
+}
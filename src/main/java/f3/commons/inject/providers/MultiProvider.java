@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject.providers;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import f3.commons.inject.IInjector;
+import f3.commons.inject.InjectKind;
+import f3.commons.inject.ProviderContext;
+import lombok.Getter;
+
+/**
+ * Provider of {@link List}, {@link Set}, {@link Map} and array fields which receive all bound implementations of element type.
+ * Implementations (and map keys) are resolved on bind, provide only creates immutable array-backed collection of its instances.
+ * @author n3k0nation
+ *
+ */
+public class MultiProvider extends AbstractProvider {
+	
+	@Getter private final InjectKind kind;
+	/** flatten providers of implementations in bind order */
+	private final AbstractProvider[] elements;
+	/** keys of elements for map, null for other kinds */
+	private final KeyTable keys;
+	
+	public MultiProvider(InjectKind kind, Class<?> elementType, AbstractProvider[] elements) {
+		this(kind, elementType, null, null, elements);
+	}
+	
+	/**
+	 * Creates map provider.
+	 * @param keys keys of elements, {@link String} or constants of enum key type
+	 */
+	public MultiProvider(Class<?> elementType, Class<?> keyType, Object[] keys, AbstractProvider[] elements) {
+		this(InjectKind.MAP, elementType, keyType, keys, elements);
+	}
+	
+	private MultiProvider(InjectKind kind, Class<?> elementType, Class<?> keyType, Object[] keys, AbstractProvider[] elements) {
+		super(elementType);
+		this.kind = kind;
+		this.elements = elements;
+		this.keys = keys == null ? null : new KeyTable(keyType, keys);
+	}
+	
+	public AbstractProvider[] getElements() {
+		return elements.clone();
+	}
+	
+	/**
+	 * @return key type of map, null for other kinds
+	 */
+	public Class<?> getKeyType() {
+		return keys == null ? null : keys.keyType;
+	}
+	
+	/**
+	 * @return keys of elements for map, null for other kinds
+	 */
+	public Object[] getKeys() {
+		return keys == null ? null : keys.keys.clone();
+	}
+	
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Field field) {
+		return false; //resolved by injector only
+	}
+	
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Parameter parameter) {
+		return false;
+	}
+	
+	@Override
+	public Object provide(ProviderContext context) {
+		final IInjector injector = context.getInjector();
+		final Object[] values = kind == InjectKind.ARRAY ? (Object[]) Array.newInstance(getClassDepend(), elements.length) : new Object[elements.length];
+		for(int i = 0; i < elements.length; i++) {
+			final Object value = elements[i].provide(context);
+			if(value != null && injector != null && !elements[i].isInjected(value)) {
+				injector.inject(value);
+			}
+			values[i] = value;
+		}
+		
+		switch(kind) {
+			case LIST:
+				return new ArrayBackedList<>(values);
+			case SET:
+				return new ArrayBackedSet<>(values);
+			case MAP:
+				return keys.isEnum() ? keys.toEnumMap(values) : new ArrayBackedMap<>(keys, values);
+			default:
+				return values;
+		}
+	}
+	
+	@Override
+	public int getPriority(Class<?> clazz, Field field) {
+		return Integer.MAX_VALUE;
+	}
+	
+	private static class ArrayBackedList<E> extends AbstractList<E> implements RandomAccess {
+		private final Object[] values;
+		
+		ArrayBackedList(Object[] values) {
+			this.values = values;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public E get(int index) {
+			return (E) values[index];
+		}
+		
+		@Override
+		public int size() {
+			return values.length;
+		}
+	}
+	
+	private static class ArrayBackedSet<E> extends AbstractSet<E> {
+		private final Object[] values;
+		
+		ArrayBackedSet(Object[] values) {
+			int size = 0;
+			for(int i = 0; i < values.length; i++) { //same instance may be provided by several implementations
+				if(!contains(values, size, values[i])) {
+					values[size++] = values[i];
+				}
+			}
+			
+			if(size == values.length) {
+				this.values = values;
+			} else {
+				this.values = new Object[size];
+				System.arraycopy(values, 0, this.values, 0, size);
+			}
+		}
+		
+		private static boolean contains(Object[] values, int size, Object value) {
+			for(int i = 0; i < size; i++) {
+				if(values[i] == null ? value == null : values[i].equals(value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return contains(values, values.length, o);
+		}
+		
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				private int index;
+				
+				@Override
+				public boolean hasNext() {
+					return index < values.length;
+				}
+				
+				@SuppressWarnings("unchecked")
+				@Override
+				public E next() {
+					if(index >= values.length) {
+						throw new NoSuchElementException();
+					}
+					return (E) values[index++];
+				}
+			};
+		}
+		
+		@Override
+		public int size() {
+			return values.length;
+		}
+	}
+	
+	/**
+	 * Immutable open addressing hash table of map keys to its indexes, shared by all provided maps.
+	 */
+	private static class KeyTable {
+		private final Class<?> keyType;
+		private final Object[] keys;
+		/** key index + 1 by hash slot, zero is empty slot */
+		private final int[] slots;
+		private final int mask;
+		
+		KeyTable(Class<?> keyType, Object[] keys) {
+			this.keyType = keyType;
+			this.keys = keys;
+			
+			int capacity = 2;
+			while(capacity < keys.length * 2) {
+				capacity <<= 1;
+			}
+			slots = new int[capacity];
+			mask = capacity - 1;
+			
+			for(int i = 0; i < keys.length; i++) {
+				int slot = hash(keys[i]) & mask;
+				while(slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = i + 1;
+			}
+		}
+		
+		private static int hash(Object key) {
+			final int h = key.hashCode() * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+		
+		int indexOf(Object key) {
+			if(key == null) {
+				return -1;
+			}
+			
+			for(int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+				final int index = slots[slot] - 1;
+				if(keys[index].equals(key)) {
+					return index;
+				}
+			}
+			return -1;
+		}
+		
+		boolean isEnum() {
+			return keyType.isEnum();
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Map<?, ?> toEnumMap(Object[] values) {
+			final EnumMap map = new EnumMap(keyType);
+			for(int i = 0; i < keys.length; i++) {
+				map.put(keys[i], values[i]);
+			}
+			return Collections.unmodifiableMap(map);
+		}
+	}
+	
+	private static class ArrayBackedMap<K, V> extends AbstractMap<K, V> {
+		private final KeyTable keys;
+		private final Object[] values;
+		
+		ArrayBackedMap(KeyTable keys, Object[] values) {
+			this.keys = keys;
+			this.values = values;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public V get(Object key) {
+			final int index = keys.indexOf(key);
+			return index < 0 ? null : (V) values[index];
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return keys.indexOf(key) >= 0;
+		}
+		
+		@Override
+		public int size() {
+			return values.length;
+		}
+		
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new Iterator<Map.Entry<K, V>>() {
+						private int index;
+						
+						@Override
+						public boolean hasNext() {
+							return index < values.length;
+						}
+						
+						@SuppressWarnings("unchecked")
+						@Override
+						public Map.Entry<K, V> next() {
+							if(index >= values.length) {
+								throw new NoSuchElementException();
+							}
+							final int i = index++;
+							return new AbstractMap.SimpleImmutableEntry<>((K) keys.keys[i], (V) values[i]);
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					return values.length;
+				}
+			};
+		}
+	}
+}
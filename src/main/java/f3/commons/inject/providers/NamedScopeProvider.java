@@ -17,6 +17,7 @@ package f3.commons.inject.providers;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
 
 import javax.inject.Named;
 
@@ -36,6 +37,10 @@ public class NamedScopeProvider extends AbstractProvider {
 		this.scope = (NamedScope) scope;
 	}
 	
+	public String getName() {
+		return scope.value();
+	}
+	
 	@Override
 	public boolean isProvideFor(Class<?> clazz, Field field) {
 		Named named = field.getAnnotation(Named.class);
@@ -46,6 +51,16 @@ public class NamedScopeProvider extends AbstractProvider {
 		return named.value().equals(scope.value()) && super.isProvideFor(clazz, field);
 	}
 
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Parameter parameter) {
+		Named named = parameter.getAnnotation(Named.class);
+		if(named == null) {
+			return false;
+		}
+		
+		return named.value().equals(scope.value()) && super.isProvideFor(clazz, parameter);
+	}
+
 	@Override
 	public Object provide(ProviderContext context) {
 		return super.provide(context);
@@ -56,4 +71,9 @@ public class NamedScopeProvider extends AbstractProvider {
 		return 0;
 	}
 
+	@Override
+	public AbstractProvider flatten() { //scope only matches inject points
+		return getNext() == null ? this : getNext().flatten();
+	}
+
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject.providers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Instance which is created once and shared by all provides, e.g. singleton or invoker of method depend.
+ * Instance is created by first requesting thread without any held lock, other threads wait until it is published.
+ * Thread which would wait in cycle (its creation is awaited by creator of this instance) and cyclic request of creating thread
+ * receive instance under creation, so cycles of shared instances never deadlock.
+ * @author n3k0nation
+ *
+ */
+class SharedInstance {
+	/** instance which is awaited by thread, used to detect waits in cycle */
+	private final static Map<Thread, SharedInstance> waits = new ConcurrentHashMap<>();
+	
+	/** published only when it is fully created */
+	private volatile Object instance;
+	/** instance which is creating now by owner, cyclic requests receive it */
+	private volatile Object creating;
+	private volatile Thread owner;
+	
+	/**
+	 * @return published instance or null
+	 */
+	Object getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Waits until instance is created by other thread, except waits in cycle.
+	 * @return true if current thread must create instance and {@link #complete(Object)} it
+	 */
+	boolean acquire() {
+		final Thread current = Thread.currentThread();
+		boolean isInterrupted = false;
+		try {
+			synchronized(this) {
+				while(instance == null) {
+					if(owner == null) {
+						owner = current;
+						return true;
+					}
+					
+					if(owner == current) {
+						return false;
+					}
+					
+					waits.put(current, this); //registered before check, so one of threads in cycle sees other
+					try {
+						if(isWaitCycle(current)) {
+							return false;
+						}
+						wait();
+					} catch(InterruptedException e) {
+						isInterrupted = true;
+					} finally {
+						waits.remove(current);
+					}
+				}
+				return false;
+			}
+		} finally {
+			if(isInterrupted) {
+				current.interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if owner of this instance waits (directly or through other owners) instance created by current thread
+	 */
+	private boolean isWaitCycle(Thread current) {
+		Thread thread = owner;
+		for(int i = 0; thread != null && i <= waits.size(); i++) {
+			if(thread == current) {
+				return true;
+			}
+			
+			final SharedInstance awaited = waits.get(thread);
+			thread = awaited == null ? null : awaited.owner;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return published instance, instance under creation or null if it is not constructed yet
+	 */
+	Object getAvailable() {
+		return instance != null ? instance : creating;
+	}
+	
+	/**
+	 * Makes constructed instance visible for cyclic requests while it is injected.
+	 */
+	void setCreating(Object creating) {
+		this.creating = creating;
+	}
+	
+	boolean isCreating(Object instance) {
+		return instance == creating;
+	}
+	
+	/**
+	 * Publishes created instance and wakes waiting threads.
+	 * @param created instance or null if creation failed, then next request creates it again
+	 */
+	synchronized void complete(Object created) {
+		instance = created;
+		creating = null;
+		owner = null;
+		notifyAll();
+	}
+	
+	/**
+	 * Forgets published instance, next request creates new one.
+	 */
+	synchronized void release() {
+		instance = null;
+	}
+}
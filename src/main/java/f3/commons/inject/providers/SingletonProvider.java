@@ -21,6 +21,7 @@ import java.lang.reflect.Method;
 
 import javax.inject.Singleton;
 
+import f3.commons.inject.IInjector;
 import f3.commons.inject.ProviderContext;
 import f3.commons.reflection.ClassUtils;
 
@@ -31,40 +32,91 @@ import f3.commons.reflection.ClassUtils;
 public class SingletonProvider extends DefaultProvider {
 	
 	private final Singleton scope;
-	private Object singleton;
+	private final SharedInstance shared = new SharedInstance();
 	
 	public SingletonProvider(Object depend, Annotation scope) {
 		super(depend);
 		this.scope = (Singleton) scope;
 	}
 	
+	/**
+	 * Singleton is created and injected once, so its post construct callbacks are called once too.
+	 * Singleton is created without any held lock, its post construct callbacks are called after it is visible to cyclic depends.
+	 * Other threads wait until singleton is fully injected and never see partially built instance, except cycles of singletons
+	 * requested by different threads which receive it while it is injected.
+	 */
 	@Override
 	public Object provide(ProviderContext context) {
-		if(singleton != null) {
-			return singleton;
+		final Object result = shared.getInstance();
+		if(result != null) {
+			return result;
 		}
 		
-		return super.provide(context);
+		if(!shared.acquire()) {
+			return shared.getAvailable();
+		}
+		
+		Object created = null;
+		try {
+			final Object instance = super.provide(context);
+			final IInjector injector = context.getInjector();
+			if(instance != null && injector != null) {
+				injector.inject(instance);
+			}
+			created = instance;
+		} finally {
+			shared.complete(created);
+		}
+		return created;
+	}
+	
+	@Override
+	public boolean isInjected(Object instance) {
+		return instance != null && (instance == shared.getInstance() || shared.isCreating(instance));
+	}
+	
+	/**
+	 * @return created singleton or null
+	 */
+	public Object getSingleton() {
+		return shared.getInstance();
+	}
+	
+	/**
+	 * Forgets created singleton, next provide creates new one.
+	 */
+	public void release() {
+		shared.release();
 	}
 	
 	@Override
 	protected Object createClass(Class<?> clazz, Object object) throws ReflectiveOperationException {
 		final Object instance = ClassUtils.singletonInstance(clazz);
 		if(instance == null) {
-			return singleton = super.createClass(clazz, object);
+			return setCreating(super.createClass(clazz, object));
 		}
 		
-		return singleton = instance;
+		return setCreating(instance);
 	}
 	
 	@Override
-	protected Object createFromField(Field field, Object object) throws ReflectiveOperationException {
-		return singleton = super.createFromField(field, object);
+	protected Object createFromFactory(ConstructorFactory factory, ProviderContext context) {
+		return setCreating(super.createFromFactory(factory, context));
 	}
 	
 	@Override
-	protected Object createFromMethod(Method method, Object object) throws ReflectiveOperationException {
-		return singleton = super.createFromMethod(method, object);
+	protected Object createFromField(Field field, ProviderContext context) throws ReflectiveOperationException {
+		return setCreating(super.createFromField(field, context));
+	}
+	
+	@Override
+	protected Object createFromMethod(Method method, ProviderContext context) throws ReflectiveOperationException {
+		return setCreating(super.createFromMethod(method, context));
+	}
+	
+	private Object setCreating(Object instance) {
+		shared.setCreating(instance);
+		return instance;
 	}
 
 }
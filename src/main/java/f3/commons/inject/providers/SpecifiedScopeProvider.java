@@ -17,6 +17,7 @@ package f3.commons.inject.providers;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
 import java.util.List;
 
 import f3.commons.inject.SpecifiedScope;
@@ -37,11 +38,7 @@ public class SpecifiedScopeProvider extends AbstractProvider {
 
 	@Override
 	public boolean isProvideFor(Class<?> clazz, Field field) {
-		if(scope.hierarchy()) {
-			if(!scope.value().isAssignableFrom(clazz)) {
-				return false;
-			}
-		} else if(!scope.value().equals(clazz)) {
+		if(!isScopeFor(clazz)) {
 			return false;
 		}
 		
@@ -56,6 +53,32 @@ public class SpecifiedScopeProvider extends AbstractProvider {
 		return true;
 	}
 	
+	@Override
+	public boolean isProvideFor(Class<?> clazz, Parameter parameter) {
+		if(!isScopeFor(clazz)) {
+			return false;
+		}
+		
+		if(!super.isProvideFor(clazz, parameter)) {
+			return false;
+		}
+		
+		//parameter names available only if class compiled with -parameters
+		if(!scope.field().isEmpty() && !scope.field().equals(parameter.getName())) {
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private boolean isScopeFor(Class<?> clazz) {
+		if(scope.hierarchy()) {
+			return scope.value().isAssignableFrom(clazz);
+		}
+		
+		return scope.value().equals(clazz);
+	}
+	
 	@Override
 	public int getPriority(Class<?> clazz, Field field) {
 		if(!scope.hierarchy() || scope.value().equals(clazz)) {
@@ -70,4 +93,9 @@ public class SpecifiedScopeProvider extends AbstractProvider {
 		return hierarchyIndex;
 	}
 
+	@Override
+	public AbstractProvider flatten() { //scope only matches inject points
+		return getNext() == null ? this : getNext().flatten();
+	}
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject.providers;
+
+import java.lang.annotation.Annotation;
+
+import f3.commons.inject.IInjector;
+import f3.commons.inject.ProviderContext;
+import f3.commons.inject.ScopeContext;
+import f3.commons.inject.UnitScope;
+
+/**
+ * Gives depend cached in current {@link ScopeContext}, depend is created and injected once per scope.
+ * @author n3k0nation
+ *
+ */
+public class UnitScopeProvider extends DefaultProvider {
+	
+	private final UnitScope scope;
+	
+	public UnitScopeProvider(Object depend, Annotation scope) {
+		super(depend);
+		this.scope = (UnitScope) scope;
+	}
+	
+	/**
+	 * @throws IllegalStateException if current thread haven't open scope
+	 */
+	@Override
+	public Object provide(ProviderContext context) {
+		final ScopeContext unit = ScopeContext.current();
+		if(unit == null) {
+			throw new IllegalStateException("No open unit scope for " + getDepend());
+		}
+		
+		Object instance = unit.get(this);
+		if(instance != null) {
+			return instance;
+		}
+		
+		instance = super.provide(context);
+		if(instance == null) {
+			return null;
+		}
+		
+		unit.put(this, instance); //cyclic depends receive it while inject
+		final IInjector injector = context.getInjector();
+		if(injector != null) {
+			injector.inject(instance);
+		}
+		return instance;
+	}
+	
+	@Override
+	public boolean isInjected(Object instance) {
+		final ScopeContext unit = ScopeContext.current();
+		return instance != null && unit != null && unit.get(this) == instance;
+	}
+
+}
@@ -31,6 +31,11 @@ public class DefaultProviderRule implements IProviderRule {
 	private final Class<? extends Annotation> scopeAnnotation;
 	private final BiFunction<Object, Annotation, ? extends AbstractProvider> providerFactory;
 	
+	@Override
+	public Class<? extends Annotation> getScopeAnnotation() {
+		return scopeAnnotation;
+	}
+	
 	@Override
 	public boolean isSupportScope(Class<?> owner, Annotation annotation) {
 		return annotation.annotationType() == scopeAnnotation;
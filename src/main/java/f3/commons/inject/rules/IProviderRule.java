@@ -24,6 +24,13 @@ import f3.commons.inject.providers.AbstractProvider;
  *
  */
 public interface IProviderRule {
+	/**
+	 * @return scope annotation type handled by rule, rules with null scope checked for any scope annotation
+	 */
+	default Class<? extends Annotation> getScopeAnnotation() {
+		return null;
+	}
+	
 	boolean isSupportScope(Class<?> owner, Annotation annotation);
 	
 	AbstractProvider createProvider(Object depend, Annotation scopeAnnotation);
@@ -28,9 +28,14 @@ import f3.commons.inject.providers.SingletonProvider;
  */
 public class SingletonProviderRule implements IProviderRule {
 
+	@Override
+	public Class<? extends Annotation> getScopeAnnotation() {
+		return Singleton.class;
+	}
+
 	@Override
 	public boolean isSupportScope(Class<?> owner, Annotation annotation) {
-		return owner.isAnnotationPresent(Singleton.class) || annotation.annotationType().equals(Singleton.class);
+		return annotation.annotationType() == Singleton.class;
 	}
 
 	@Override
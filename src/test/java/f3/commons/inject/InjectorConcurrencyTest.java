@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2010-2017 fork3
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR 
+ * IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package f3.commons.inject;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.inject.Inject;
+import javax.inject.Scope;
+import javax.inject.Singleton;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import f3.commons.inject.InjectorTest.ComponentA;
+import f3.commons.inject.InjectorTest.ISharedComponent;
+import f3.commons.inject.InjectorTest.SharedFieldsInject;
+import f3.commons.inject.InjectorTest.TestSimpleInject;
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.rules.DefaultProviderRule;
+
+/**
+ * Stress tests of concurrent inject and binds changes. Each test repeats short races many times,
+ * so failures are probabilistic but any failure is a real bug.
+ * @author n3k0nation
+ *
+ */
+public class InjectorConcurrencyTest {
+	private final static int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+	private final static int ROUNDS = 200;
+	
+	/**
+	 * Runs task by all threads at once and rethrows first failure.
+	 * @param task receives index of thread
+	 */
+	private static void race(int threads, IntConsumer task) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(threads);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		for(int i = 0; i < threads; i++) {
+			final int index = i;
+			final Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					task.accept(index);
+				} catch(Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					finish.countDown();
+				}
+			}, "inject-stress-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		start.countDown();
+		Assert.assertTrue("race is not finished", finish.await(60, TimeUnit.SECONDS));
+		final Throwable e = failure.get();
+		if(e instanceof Error) {
+			throw (Error) e;
+		}
+		if(e != null) {
+			throw new AssertionError(e);
+		}
+	}
+	
+	@Test
+	public void testSingletonCreatedOnce() throws InterruptedException {
+		for(int round = 0; round < ROUNDS; round++) {
+			final Injector injector = new Injector();
+			injector.setListener(new InjectorListenerStub());
+			injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, SlowSingleton.class, SingletonClient.class));
+			SlowSingleton.created.set(0);
+			
+			final SlowSingleton[] seen = new SlowSingleton[THREADS];
+			race(THREADS, i -> {
+				final SingletonClient client = injector.newInstance(SingletonClient.class);
+				Assert.assertTrue("singleton is seen partially built", client.singleton.isReady);
+				seen[i] = client.singleton;
+			});
+			
+			Assert.assertEquals(SlowSingleton.created.get(), 1);
+			for(int i = 1; i < seen.length; i++) {
+				Assert.assertSame(seen[i], seen[0]);
+			}
+		}
+	}
+	
+	@Test
+	public void testConcurrentAddBind() throws Exception {
+		final Field[] fields = BindTarget.class.getDeclaredFields();
+		for(int round = 0; round < ROUNDS; round++) {
+			final Injector injector = new Injector();
+			injector.setListener(new InjectorListenerStub());
+			race(THREADS, i -> {
+				if((i & 1) == 0) { //binders
+					for(int j = i >> 1; j < fields.length; j += (THREADS + 1) >> 1) {
+						injector.addBind(fields[j], BindValue.class);
+					}
+				} else { //readers see each bind before or after change
+					for(int j = 0; j < 16; j++) {
+						injector.inject(new BindTarget());
+					}
+				}
+			});
+			
+			final BindTarget target = new BindTarget();
+			injector.inject(target);
+			for(int i = 0; i < fields.length; i++) {
+				Assert.assertNotNull("lost bind " + fields[i].getName(), fields[i].get(target));
+			}
+		}
+	}
+	
+	@Test
+	public void testConcurrentAutoBind() throws InterruptedException {
+		final List<List<Class<?>>> groups = Arrays.asList(
+				Arrays.asList(ISharedComponent.class, ComponentA.class),
+				Arrays.asList(TestSimpleInject.class),
+				Arrays.asList(SharedFieldsInject.class),
+				Arrays.asList(SlowSingleton.class, SingletonClient.class));
+		for(int round = 0; round < ROUNDS; round++) {
+			final Injector injector = new Injector();
+			injector.setListener(new InjectorListenerStub());
+			race(THREADS, i -> {
+				if(i < groups.size()) {
+					injector.autoBind(groups.get(i));
+				} else {
+					for(int j = 0; j < 16; j++) {
+						injector.inject(new SharedFieldsInject());
+					}
+				}
+			});
+			
+			Assert.assertNotNull(injector.newInstance(TestSimpleInject.class).component);
+			Assert.assertNotNull(injector.newInstance(SharedFieldsInject.class).component3);
+			Assert.assertTrue(injector.newInstance(SingletonClient.class).singleton.isReady);
+		}
+	}
+	
+	@Test
+	public void testParallelInject() {
+		final Injector injector = new Injector();
+		injector.setListener(new InjectorListenerStub());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, SlowSingleton.class, SingletonClient.class));
+		SlowSingleton.created.set(0);
+		
+		final List<SingletonClient> clients = IntStream.range(0, 10_000).parallel()
+				.mapToObj(i -> injector.newInstance(SingletonClient.class))
+				.collect(Collectors.toList());
+		Assert.assertEquals(SlowSingleton.created.get(), 1);
+		for(int i = 0; i < clients.size(); i++) {
+			Assert.assertSame(clients.get(i).singleton, clients.get(0).singleton);
+			Assert.assertTrue(clients.get(i).singleton.isReady);
+		}
+	}
+	
+	@Test
+	public void testCrossThreadSingletonCycle() throws InterruptedException {
+		for(int round = 0; round < ROUNDS; round++) {
+			final Injector injector = new Injector();
+			injector.setListener(new InjectorListenerStub());
+			injector.autoBind(Arrays.asList(CycleA.class, CycleB.class, CycleHolderA.class, CycleHolderB.class));
+			
+			final CycleA[] seen = new CycleA[2];
+			race(2, i -> {
+				if(i == 0) {
+					seen[i] = injector.newInstance(CycleHolderA.class).a;
+				} else {
+					seen[i] = injector.newInstance(CycleHolderB.class).b.a;
+				}
+			});
+			
+			Assert.assertSame(seen[0], seen[1]);
+			Assert.assertSame(seen[0].b.a, seen[0]);
+		}
+	}
+	
+	@Test
+	public void testIndependentInjectors() throws Exception {
+		final Injector other = new Injector();
+		other.setListener(new InjectorListenerStub());
+		other.autoBind(Arrays.asList(OtherSingleton.class, OtherHolder.class));
+		
+		final Injector injector = new Injector();
+		injector.setListener(new InjectorListenerStub());
+		injector.autoBind(Arrays.asList(WaitingSingleton.class, WaitingHolder.class));
+		
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			WaitingSingleton.task = () -> executor.submit(() -> other.newInstance(OtherHolder.class).singleton).get(10, TimeUnit.SECONDS);
+			race(1, i -> {
+				final WaitingHolder holder = injector.newInstance(WaitingHolder.class);
+				Assert.assertNotNull("other injector is blocked by post construct", holder.singleton.other);
+			});
+		} finally {
+			WaitingSingleton.task = null;
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testInjectDuringResolve() {
+		final Injector injector = new Injector();
+		injector.setListener(new InjectorListenerStub());
+		injector.addRule(new DefaultProviderRule(ProbeScope.class, (depend, scope) -> new ProbeProvider(depend, injector)));
+		injector.autoBind(Arrays.asList(ProbeModule.class, ProbeService.class, ProbeClient.class));
+		
+		final ProbeClient client = new ProbeClient();
+		injector.inject(client);
+		Assert.assertNotNull("plan merged during resolve is cached", client.service);
+	}
+	
+	@Singleton
+	public static class SlowSingleton {
+		static final AtomicInteger created = new AtomicInteger();
+		@Inject ISharedComponent component;
+		boolean isReady;
+		
+		public SlowSingleton() {
+			created.incrementAndGet();
+			Thread.yield();
+		}
+		
+		@PostConstruct
+		void init() {
+			Thread.yield();
+			isReady = component != null;
+		}
+	}
+	
+	public static class SingletonClient {
+		@Inject SlowSingleton singleton;
+	}
+	
+	@Singleton
+	public static class CycleA {
+		@Inject CycleB b;
+		
+		public CycleA() {
+			Thread.yield();
+		}
+	}
+	
+	@Singleton
+	public static class CycleB {
+		@Inject CycleA a;
+		
+		public CycleB() {
+			Thread.yield();
+		}
+	}
+	
+	public static class CycleHolderA {
+		@Inject CycleA a;
+	}
+	
+	public static class CycleHolderB {
+		@Inject CycleB b;
+	}
+	
+	/**
+	 * Post construct waits singleton of other injector created by other thread.
+	 */
+	@Singleton
+	public static class WaitingSingleton {
+		static volatile Callable<Object> task;
+		Object other;
+		
+		@PostConstruct
+		void init() throws Exception {
+			other = task.call();
+		}
+	}
+	
+	public static class WaitingHolder {
+		@Inject WaitingSingleton singleton;
+	}
+	
+	@Singleton
+	public static class OtherSingleton {
+	}
+	
+	public static class OtherHolder {
+		@Inject OtherSingleton singleton;
+	}
+	
+	@Scope
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	public @interface ProbeScope {
+	}
+	
+	/**
+	 * Injects client on each resolve check, before its point is resolved.
+	 */
+	public static class ProbeProvider extends AbstractProvider {
+		private final Injector injector;
+		
+		public ProbeProvider(Object depend, Injector injector) {
+			super(depend);
+			this.injector = injector;
+		}
+		
+		@Override
+		public boolean isProvideFor(Class<?> clazz, Field field) {
+			injector.inject(new ProbeClient());
+			return super.isProvideFor(clazz, field);
+		}
+		
+		@Override
+		public int getPriority(Class<?> clazz, Field field) {
+			return 0;
+		}
+	}
+	
+	@ProbeScope
+	public static class ProbeModule {
+	}
+	
+	public static class ProbeService {
+	}
+	
+	public static class ProbeClient {
+		@Inject ProbeService service;
+	}
+	
+	public static class BindValue {
+	}
+	
+	public static class BindTarget {
+		BindValue value0;
+		BindValue value1;
+		BindValue value2;
+		BindValue value3;
+		BindValue value4;
+		BindValue value5;
+		BindValue value6;
+		BindValue value7;
+	}
+}
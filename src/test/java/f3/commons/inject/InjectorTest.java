@@ -15,16 +15,43 @@
  */
 package f3.commons.inject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import f3.commons.inject.providers.AbstractProvider;
+import f3.commons.inject.providers.DefaultProvider;
+import f3.commons.inject.providers.LazyProvider;
+import f3.commons.inject.providers.NamedScopeProvider;
+import f3.commons.inject.providers.SingletonProvider;
+import f3.commons.inject.providers.SpecifiedScopeProvider;
+
 /**
  * @author n3k0nation
  *
@@ -57,6 +84,18 @@ public class InjectorTest {
 				Assert.fail("Class: " + injectClass.getCanonicalName() + ", Field: " + injectField.getName());
 			}
 		}
+		
+		@Override
+		public void onBindNotFound(Class<?> injectClass, Parameter injectParameter) {
+			if(isFailOnBindNotFound) {
+				Assert.fail("Class: " + injectClass.getCanonicalName() + ", Parameter: " + injectParameter.getName());
+			}
+		}
+		
+		@Override
+		public void onFailedLifecycle(Object instance, Method method, Throwable e) {
+			Assert.fail("Class: " + instance.getClass().getCanonicalName() + ", Method: " + method.getName() + ", error: " + e);
+		}
 	}
 	
 	@Test
@@ -298,4 +337,1091 @@ public class InjectorTest {
 			return "ComponentOverridedChildImpl1::doSmth";
 		}
 	}
+	
+	@Test
+	public void testDeferredInject() {
+		ArrayList<Class<?>> classes = new ArrayList<>();
+		classes.add(ISharedComponent.class);
+		classes.add(DeferredInject.class);
+		classes.add(CountedComponent.class);
+		
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(classes);
+		
+		CountedComponent.created = 0;
+		DeferredInject di = new DeferredInject();
+		injector.inject(di);
+		Assert.assertEquals(CountedComponent.created, 0);
+		
+		Assert.assertEquals(di.lazy.get().doSmth(), "CountedComponent::doSmth");
+		Assert.assertTrue(di.lazy.get() == di.lazy.get());
+		Assert.assertEquals(CountedComponent.created, 1);
+		
+		Assert.assertTrue(di.provider.get() != di.provider.get());
+		Assert.assertEquals(CountedComponent.created, 3);
+	}
+	
+	public static class DeferredInject {
+		@Inject Lazy<ISharedComponent> lazy;
+		@Inject Provider<ISharedComponent> provider;
+	}
+	
+	public static class CountedComponent implements ISharedComponent {
+		static int created;
+		
+		public CountedComponent() {
+			created++;
+		}
+		
+		@Override
+		public String doSmth() {
+			return "CountedComponent::doSmth";
+		}
+	}
+	
+	@Test
+	public void testConstructorInject() {
+		ArrayList<Class<?>> classes = new ArrayList<>();
+		classes.add(ISharedComponent.class);
+		classes.add(ComponentA.class);
+		classes.add(ComponentB.class);
+		classes.add(ConstructorInject.class);
+		classes.add(ConstructorInjectHolder.class);
+		
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(classes);
+		
+		ConstructorInject ci = injector.newInstance(ConstructorInject.class);
+		Assert.assertEquals(ci.component.doSmth(), "ComponentA::doSmth");
+		Assert.assertEquals(ci.namedComponent.doSmth(), "ComponentB::doSmth");
+		
+		ConstructorInjectHolder holder = new ConstructorInjectHolder();
+		injector.inject(holder);
+		Assert.assertEquals(holder.inject.namedComponent.doSmth(), "ComponentB::doSmth");
+		Assert.assertTrue(holder.inject.component == ci.component);
+	}
+	
+	public static class ConstructorInject {
+		final ISharedComponent component;
+		final ISharedComponent namedComponent;
+		
+		@Inject
+		public ConstructorInject(ISharedComponent component, @Named("TestInject") ISharedComponent namedComponent) {
+			this.component = component;
+			this.namedComponent = namedComponent;
+		}
+	}
+	
+	public static class ConstructorInjectHolder {
+		@Inject ConstructorInject inject;
+	}
+	
+	@Test
+	public void testDependencyGraph() {
+		ArrayList<Class<?>> classes = new ArrayList<>();
+		classes.add(ISharedComponent.class);
+		classes.add(ComponentA.class);
+		classes.add(ComponentB.class);
+		classes.add(TestSimpleInject.class);
+		classes.add(CycleA.class);
+		classes.add(CycleB.class);
+		classes.add(DeferredCycle.class);
+		classes.add(SharedCycleA.class);
+		classes.add(SharedCycleB.class);
+		
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(classes);
+		
+		DependencyGraph graph = injector.getDependencyGraph();
+		Assert.assertEquals(graph.getCycles().size(), 1);
+		Assert.assertTrue(graph.isCycled(CycleA.class));
+		Assert.assertTrue(graph.isCycled(CycleB.class));
+		Assert.assertFalse(graph.isCycled(DeferredCycle.class));
+		Assert.assertEquals(graph.getMaxDepth(CycleA.class), DependencyGraph.UNBOUNDED);
+		
+		Assert.assertEquals(graph.getMaxDepth(TestSimpleInject.class), 1);
+		Assert.assertEquals(graph.getInstantiations(TestSimpleInject.class), 0); //singleton
+		Assert.assertEquals(graph.getMaxDepth(DeferredCycle.class), 1);
+		Assert.assertEquals(graph.getInstantiations(DeferredCycle.class), 0);
+		Assert.assertFalse(graph.isCycled(SharedCycleA.class)); //singleton cycle is resolved by provider
+		Assert.assertEquals(graph.getMaxDepth(SharedCycleA.class), 1);
+		Assert.assertEquals(graph.getInstantiations(SharedCycleB.class), 0);
+		
+		Assert.assertEquals(graph.getUnreachableProviders().size(), 1); //ComponentB is named, nobody inject it
+		Assert.assertEquals(graph.getUnreachableProviders().get(0).getDepend(), ComponentB.class);
+		
+		Assert.assertTrue(graph.toDot().contains("color=red"));
+		Assert.assertTrue(graph.toJson().startsWith("{\"nodes\":["));
+	}
+	
+	public static class CycleA {
+		@Inject CycleB b;
+	}
+	
+	public static class CycleB {
+		@Inject CycleA a;
+	}
+	
+	@Singleton
+	public static class SharedCycleA {
+		@Inject SharedCycleB b;
+	}
+	
+	@Singleton
+	public static class SharedCycleB {
+		@Inject SharedCycleA a;
+	}
+	
+	public static class DeferredCycle {
+		@Inject Lazy<DeferredCycle> self;
+	}
+	
+	@Test
+	public void testStaticDependencyGraph() {
+		Injector parent = new Injector();
+		parent.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, CountedComponent.class, StaticGraphInject.class));
+		Injector child = parent.createChild();
+		child.autoBind(Collections.singletonList(ComponentB.class));
+		
+		DependencyGraph graph = child.getDependencyGraph();
+		Assert.assertTrue(graph.getCycles().isEmpty()); //static self is not injected with instance
+		Assert.assertEquals(graph.getMaxDepth(StaticGraphInject.class), 1);
+		Assert.assertEquals(graph.getInstantiations(StaticGraphInject.class), 1);
+		
+		int statics = 0;
+		for(DependencyGraph.Dependency dependency : graph.getDependenciesOf(StaticGraphInject.class)) {
+			if(dependency.isStatic()) {
+				statics++;
+			}
+		}
+		Assert.assertEquals(statics, 2);
+		Assert.assertTrue(graph.toJson().contains("\"static\":true"));
+	}
+	
+	public static class StaticGraphInject {
+		@Inject static ISharedComponent shared;
+		@Inject static StaticGraphInject self;
+		@Inject CountedComponent component;
+	}
+	
+	@Test
+	public void testIncrementalBind() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener(false));
+		injector.autoBind(Arrays.asList(ISharedComponent.class, TestSimpleInject.class));
+		
+		TestSimpleInject tsi = new TestSimpleInject();
+		injector.inject(tsi);
+		Assert.assertNull(tsi.component);
+		
+		injector.autoBind(Collections.singletonList(ComponentA.class));
+		injector.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "ComponentA::doSmth");
+		
+		injector.unbind(Collections.singletonList(ComponentA.class));
+		tsi = new TestSimpleInject();
+		injector.inject(tsi);
+		Assert.assertNull(tsi.component);
+		
+		injector.autoBind(Collections.singletonList(CountedComponent.class));
+		injector.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "CountedComponent::doSmth");
+	}
+	
+	@Test
+	public void testChildInjector() {
+		Injector parent = new Injector();
+		parent.setListener(new InjectorListener());
+		parent.autoBind(Arrays.asList(ISharedComponent.class, TestSimpleInject.class, ComponentA.class));
+		
+		Injector child = parent.createChild();
+		child.autoBind(Collections.singletonList(TenantComponent.class));
+		
+		TestSimpleInject tsi = new TestSimpleInject();
+		child.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "TenantComponent::doSmth");
+		
+		parent.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "ComponentA::doSmth");
+		
+		Injector otherChild = parent.createChild();
+		otherChild.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "ComponentA::doSmth");
+		
+		try {
+			parent.autoBind(Collections.singletonList(TenantComponent.class));
+			Assert.fail("Parent injector must be sealed");
+		} catch(IllegalStateException e) {
+		}
+	}
+	
+	@SpecifiedScope(TestSimpleInject.class)
+	public static class TenantComponent implements ISharedComponent {
+		@Override
+		public String doSmth() {
+			return "TenantComponent::doSmth";
+		}
+	}
+	
+	@Test
+	public void testFrozenInjector() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, ComponentB.class, NamedInject.class,
+				SpecifiedInject.class, ComponentWrap.class, ConstructorInject.class));
+		
+		FrozenInjector frozen = injector.freeze();
+		SpecifiedInject si = new SpecifiedInject();
+		frozen.inject(si);
+		Assert.assertEquals(si.component.doSmth(), "ComponentB::doSmth && ComponentC::doSmth");
+		
+		ConstructorInject ci = frozen.newInstance(ConstructorInject.class);
+		Assert.assertEquals(ci.namedComponent.doSmth(), "ComponentB::doSmth");
+		
+		injector.unbind(Collections.singletonList(ComponentWrap.class));
+		frozen.inject(si);
+		Assert.assertEquals(si.component.doSmth(), "ComponentB::doSmth && ComponentC::doSmth");
+		
+		injector.inject(si);
+		Assert.assertEquals(si.component.doSmth(), "ComponentA::doSmth");
+	}
+	
+	@Test
+	public void testInjectAllocation() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+		
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, TestSimpleInject.class, ComponentA.class));
+		FrozenInjector frozen = injector.freeze();
+		
+		TestSimpleInject tsi = new TestSimpleInject();
+		for(int i = 0; i < 100_000; i++) { //warm up bindings and jit
+			injector.inject(tsi);
+			frozen.inject(tsi);
+		}
+		
+		final long threadId = Thread.currentThread().getId();
+		final int count = 100_000;
+		long before = bean.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < count; i++) {
+			injector.inject(tsi);
+			frozen.inject(tsi);
+		}
+		long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+		
+		Assert.assertEquals("Allocated bytes per inject: " + (double) allocated / count, 0, allocated / count);
+	}
+	
+	@Test
+	public void testModuleInvoker() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ModuleInject.class, ComponentModule.class));
+		
+		ComponentModule.created = 0;
+		ModuleInject mi1 = new ModuleInject();
+		injector.inject(mi1);
+		ModuleInject mi2 = new ModuleInject();
+		injector.inject(mi2);
+		
+		Assert.assertEquals(ComponentModule.created, 1);
+		Set<String> results = new HashSet<>(Arrays.asList(mi1.component.doSmth(), mi1.other.doSmth(), mi2.component.doSmth(), mi2.other.doSmth()));
+		Assert.assertEquals(results, new HashSet<>(Arrays.asList("ComponentModule::1", "ComponentModule::2", "ComponentModule::3", "ComponentModule::4")));
+	}
+	
+	@Test
+	public void testSingletonModuleInvoker() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, SingletonModule.class, SingletonModuleInject.class));
+		
+		SingletonModule.created = 0;
+		SingletonModuleInject smi1 = injector.newInstance(SingletonModuleInject.class);
+		SingletonModuleInject smi2 = injector.newInstance(SingletonModuleInject.class);
+		
+		Assert.assertEquals(SingletonModule.created, 1);
+		Assert.assertSame(smi1.module, smi2.module);
+		Assert.assertEquals(smi1.component.doSmth(), "SingletonModule::1");
+		Assert.assertEquals(smi2.component.doSmth(), "SingletonModule::2");
+		Assert.assertEquals(smi1.module.sequence, 2);
+	}
+	
+	public static class ModuleInject {
+		@Named("module") @Inject ISharedComponent component;
+		@Named("otherModule") @Inject ISharedComponent other;
+	}
+	
+	public static class ComponentModule {
+		static int created;
+		int sequence;
+		
+		public ComponentModule() {
+			created++;
+		}
+		
+		@NamedScope("module")
+		public ISharedComponent createComponent() {
+			final String result = "ComponentModule::" + ++sequence;
+			return () -> result;
+		}
+		
+		@NamedScope("otherModule")
+		public ISharedComponent createOther() {
+			return createComponent();
+		}
+	}
+	
+	@Singleton
+	public static class SingletonModule {
+		static int created;
+		int sequence;
+		
+		public SingletonModule() {
+			created++;
+		}
+		
+		@NamedScope("singletonModule")
+		public ISharedComponent createComponent() {
+			final String result = "SingletonModule::" + ++sequence;
+			return () -> result;
+		}
+	}
+	
+	public static class SingletonModuleInject {
+		@Inject SingletonModule module;
+		@Named("singletonModule") @Inject ISharedComponent component;
+	}
+	
+	@Test
+	public void testFlattenChains() {
+		DefaultProvider defaultProvider = new DefaultProvider(ComponentB.class);
+		NamedScopeProvider named = new NamedScopeProvider(ComponentB.class, ComponentB.class.getAnnotation(NamedScope.class));
+		named.setNext(defaultProvider);
+		Assert.assertSame(named.flatten(), defaultProvider);
+		
+		SpecifiedScopeProvider specified = new SpecifiedScopeProvider(ComponentWrap.class, ComponentWrap.class.getAnnotation(SpecifiedScope.class));
+		specified.setNext(named);
+		Assert.assertSame(specified.flatten(), defaultProvider);
+		
+		AbstractProvider lazy = new LazyProvider(specified, true).flatten();
+		Assert.assertTrue(lazy instanceof LazyProvider);
+		Assert.assertSame(((LazyProvider) lazy).getProvider(), defaultProvider);
+	}
+	
+	@Test
+	public void testSpecifiedSingleton() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(SpecifiedSingleton.class, SpecifiedSingletonInject.class));
+		
+		AbstractProvider provider = injector.getDependencyGraph().getDependenciesOf(SpecifiedSingletonInject.class).get(0).getProvider();
+		Assert.assertTrue(provider instanceof SpecifiedScopeProvider);
+		Assert.assertTrue(provider.getNext() instanceof SingletonProvider);
+		Assert.assertNull(provider.getNext().getNext());
+		
+		SpecifiedSingletonInject ssi = injector.newInstance(SpecifiedSingletonInject.class);
+		Assert.assertNotNull(ssi.singleton);
+		Assert.assertSame(injector.newInstance(SpecifiedSingletonInject.class).singleton, ssi.singleton);
+	}
+	
+	@Singleton
+	@SpecifiedScope(SpecifiedSingletonInject.class)
+	public static class SpecifiedSingleton {
+	}
+	
+	public static class SpecifiedSingletonInject {
+		@Inject SpecifiedSingleton singleton;
+	}
+	
+	@Test
+	public void testSharedProviders() {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, CountedComponent.class, TestSimpleInject.class, SharedFieldsInject.class));
+		
+		DependencyGraph graph = injector.getDependencyGraph();
+		AbstractProvider provider = graph.getDependenciesOf(TestSimpleInject.class).get(0).getProvider();
+		List<DependencyGraph.Dependency> dependencies = graph.getDependenciesOf(SharedFieldsInject.class);
+		Assert.assertEquals(dependencies.size(), 3);
+		for(int i = 0; i < dependencies.size(); i++) {
+			Assert.assertSame(dependencies.get(i).getProvider(), provider);
+		}
+		
+		SharedFieldsInject sfi = new SharedFieldsInject();
+		injector.inject(sfi);
+		Assert.assertNotNull(sfi.component3);
+	}
+	
+	@Test
+	public void testBindsFootprint() throws Exception {
+		Field[] fields = FootprintInject.class.getDeclaredFields();
+		Injector interned = new Injector();
+		Injector distinct = new Injector();
+		for(int i = 0; i < fields.length; i++) {
+			interned.addBind(fields[i], CountedComponent.class);
+			distinct.addBind(fields[i], fields[i]); //each depend has own provider
+		}
+		
+		long internedFootprint = interned.getBindsFootprint();
+		long distinctFootprint = distinct.getBindsFootprint();
+		Assert.assertTrue(internedFootprint > 0);
+		Assert.assertTrue(internedFootprint < distinctFootprint);
+		
+		Injector single = new Injector();
+		single.addBind(fields[0], CountedComponent.class);
+		Assert.assertTrue(internedFootprint - single.getBindsFootprint() < distinctFootprint - internedFootprint); //interned bind costs only its plan slot
+		
+		FootprintInject fi = new FootprintInject();
+		interned.inject(fi);
+		for(int i = 0; i < fields.length; i++) {
+			Assert.assertTrue(fields[i].get(fi) instanceof CountedComponent);
+		}
+		
+		Injector singletons = new Injector();
+		singletons.addSingletonBind(fields[0], CountedComponent.class);
+		singletons.addSingletonBind(fields[1], CountedComponent.class);
+		fi = new FootprintInject();
+		singletons.inject(fi);
+		Assert.assertSame(fi.component1, fi.component2);
+	}
+	
+	public static class FootprintInject {
+		@Inject ISharedComponent component1;
+		@Inject ISharedComponent component2;
+		@Inject ISharedComponent component3;
+		@Inject ISharedComponent component4;
+		@Inject ISharedComponent component5;
+		@Inject ISharedComponent component6;
+		@Inject ISharedComponent component7;
+		@Inject ISharedComponent component8;
+	}
+	
+	public static class SharedFieldsInject {
+		@Inject ISharedComponent component1;
+		@Inject ISharedComponent component2;
+		@Inject ISharedComponent component3;
+	}
+	
+	@Test
+	public void testDeepInject() {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, TestSimpleInject.class, DeepNode.class));
+		
+		InjectStats stats = new InjectStats();
+		injector.inject(new TestSimpleInject(), stats);
+		Assert.assertEquals(stats.getInstances(), 2);
+		Assert.assertEquals(stats.getMaxDepth(), 1);
+		
+		stats.reset();
+		injector.setMaxInjectDepth(100_000); //far deeper than recursive inject can go
+		try {
+			injector.inject(new DeepNode(), stats);
+			Assert.fail("depth limit is not checked");
+		} catch(IllegalStateException e) {
+		}
+		Assert.assertEquals(stats.getInstances(), 100_000);
+		Assert.assertEquals(stats.getMaxDepth(), 99_999);
+		Assert.assertEquals(stats.getMaxPending(), 1);
+	}
+	
+	public static class DeepNode {
+		@Inject DeepNode next;
+	}
+	
+	@Test
+	public void testMultiInject() {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, CountedComponent.class, MultiInject.class));
+		
+		MultiInject mi = new MultiInject();
+		injector.inject(mi);
+		Assert.assertEquals(mi.list.size(), 2);
+		Assert.assertTrue(mi.list.get(0) instanceof ComponentA);
+		Assert.assertTrue(mi.list.get(1) instanceof CountedComponent);
+		Assert.assertSame(mi.list.get(0), mi.array[0]);
+		Assert.assertEquals(mi.array.length, 2);
+		Assert.assertEquals(mi.set.size(), 2);
+		Assert.assertTrue(mi.set.contains(mi.list.get(0)));
+		try {
+			mi.list.add(new ComponentA());
+			Assert.fail("list is mutable");
+		} catch(UnsupportedOperationException e) {
+		}
+		
+		injector.autoBind(Collections.singletonList(TenantComponent.class));
+		injector.inject(mi);
+		Assert.assertEquals(mi.list.size(), 3);
+		Assert.assertTrue(mi.list.get(2) instanceof TenantComponent);
+		
+		injector.unbind(Collections.singletonList(CountedComponent.class));
+		injector.inject(mi);
+		Assert.assertEquals(mi.array.length, 2);
+		Assert.assertEquals(injector.getDependencyGraph().getDependenciesOf(MultiInject.class).size(), 6);
+	}
+	
+	public static class MultiInject {
+		@Inject List<ISharedComponent> list;
+		@Inject ISharedComponent[] array;
+		@Inject Set<ISharedComponent> set;
+	}
+	
+	@Test
+	public void testMapInject() {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentB.class, ComponentEField.class, ComponentE.class, MapInject.class));
+		
+		MapInject mi = new MapInject();
+		injector.inject(mi);
+		Assert.assertEquals(mi.byName.size(), 2);
+		Assert.assertEquals(mi.byName.get("TestInject").doSmth(), "ComponentB::doSmth");
+		Assert.assertEquals(mi.byName.get("field").doSmth(), "ComponentE::doSmth");
+		Assert.assertNull(mi.byName.get("factory"));
+		
+		Assert.assertEquals(mi.byScope.size(), 1);
+		Assert.assertSame(mi.byScope.get(MapKey.field), mi.byName.get("field"));
+		try {
+			mi.byScope.remove(MapKey.field);
+			Assert.fail("map is mutable");
+		} catch(UnsupportedOperationException e) {
+		}
+	}
+	
+	public static enum MapKey {
+		field, unknown
+	}
+	
+	@Test
+	public void testMultiInjectReachable() {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentB.class, ComponentEField.class, ComponentE.class, MapInject.class));
+		Assert.assertEquals(injector.getDependencyGraph().getUnreachableProviders(), Collections.emptyList());
+		
+		injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, CountedComponent.class, MultiInject.class));
+		Assert.assertEquals(injector.getDependencyGraph().getUnreachableProviders(), Collections.emptyList());
+	}
+	
+	public static class MapInject {
+		@Inject Map<String, ISharedComponent> byName;
+		@Inject Map<MapKey, ISharedComponent> byScope;
+	}
+	
+	@Test
+	public void testWeakLoaders() throws Exception {
+		Injector injector = new Injector();
+		injector.enableWeakLoaders(InjectorTest.class.getClassLoader());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, TestSimpleInject.class));
+		
+		WeakReference<ClassLoader> loader = bindPlugin(injector);
+		for(int i = 0; i < 20 && loader.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertNull(loader.get());
+		
+		TestSimpleInject tsi = new TestSimpleInject();
+		injector.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "ComponentA::doSmth");
+	}
+	
+	private static WeakReference<ClassLoader> bindPlugin(Injector injector) throws Exception {
+		ClassLoader loader = new PluginLoader(PluginComponent.class.getName());
+		Class<?> pluginClass = loader.loadClass(PluginComponent.class.getName());
+		Assert.assertNotSame(pluginClass, PluginComponent.class);
+		
+		injector.autoBind(Collections.singletonList(pluginClass));
+		ISharedComponent plugin = (ISharedComponent) injector.newInstance(pluginClass);
+		Assert.assertEquals(plugin.doSmth(), "PluginComponent::doSmth && ComponentA::doSmth");
+		
+		TestSimpleInject tsi = new TestSimpleInject(); //home classes doesn't see plugin binds
+		injector.inject(tsi);
+		Assert.assertEquals(tsi.component.doSmth(), "ComponentA::doSmth");
+		return new WeakReference<>(loader);
+	}
+	
+	/** loads own copy of class, other classes are loaded by parent */
+	static class PluginLoader extends ClassLoader {
+		private final String className;
+		
+		PluginLoader(String className) {
+			super(InjectorTest.class.getClassLoader());
+			this.className = className;
+		}
+		
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if(!name.equals(className)) {
+				return super.loadClass(name, resolve);
+			}
+			
+			synchronized(getClassLoadingLock(name)) {
+				Class<?> clazz = findLoadedClass(name);
+				if(clazz == null) {
+					try(InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						byte[] buffer = new byte[4096];
+						for(int read; (read = is.read(buffer)) > 0;) {
+							out.write(buffer, 0, read);
+						}
+						clazz = defineClass(name, out.toByteArray(), 0, out.size());
+					} catch(IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+				}
+				return clazz;
+			}
+		}
+	}
+	
+	public static class PluginComponent implements ISharedComponent {
+		@Inject ComponentA component;
+		
+		@Override
+		public String doSmth() {
+			return "PluginComponent::doSmth && " + component.doSmth();
+		}
+	}
+	
+	@Test
+	public void testInheritedInject() {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, TestSimpleInject.class));
+		
+		TestSimpleInject anonymous = new TestSimpleInject() {};
+		injector.inject(anonymous);
+		Assert.assertEquals(anonymous.component.doSmth(), "ComponentA::doSmth");
+		
+		InheritedInject inherited = new InheritedInject();
+		injector.inject(inherited);
+		Assert.assertEquals(inherited.component.doSmth(), "ComponentA::doSmth");
+		Assert.assertNull(inherited.other);
+		
+		inherited = new InheritedInject();
+		injector.freeze().inject(inherited);
+		Assert.assertEquals(inherited.component.doSmth(), "ComponentA::doSmth");
+	}
+	
+	public static class InheritedInject extends TestSimpleInject {
+		@Inject ISharedComponent other; //not bound, class is not passed to autoBind
+	}
+	
+	@Test
+	public void testStaticInject() {
+		StaticInject.shared = null;
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, StaticInject.class));
+		
+		StaticInject si = new StaticInject();
+		injector.inject(si);
+		Assert.assertEquals(si.component.doSmth(), "ComponentA::doSmth");
+		Assert.assertNull(StaticInject.shared);
+		
+		injector.injectStatics();
+		Assert.assertSame(StaticInject.shared, si.component);
+		
+		StaticInject.shared = null;
+		injector.injectStatics(); //already injected
+		injector.inject(si);
+		Assert.assertNull(StaticInject.shared);
+	}
+	
+	public static class StaticInject {
+		@Inject static ISharedComponent shared;
+		@Inject ISharedComponent component;
+	}
+	
+	@Test
+	public void testResolvedBinds() throws Exception {
+		Injector injector = new Injector();
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, ComponentB.class, TestSimpleInject.class,
+				DeferredInject.class, ConstructorInject.class, ConstructorInjectHolder.class, MultiInject.class, MapInject.class,
+				LifecycleStore.class, LifecycleService.class, LifecycleClient.class));
+		
+		String json = injector.getReflectionConfig().toJson();
+		Assert.assertTrue(json.contains("\"name\":\"" + ConstructorInject.class.getName() + "\""));
+		Assert.assertTrue(json.contains("{\"name\":\"component\",\"allowWrite\":true}"));
+		String service = getTypeConfig(json, LifecycleService.class);
+		Assert.assertTrue(service.contains("{\"name\":\"start\",\"parameterTypes\":[]}"));
+		Assert.assertTrue(service.contains("{\"name\":\"stop\",\"parameterTypes\":[]}"));
+		
+		StringWriter writer = new StringWriter();
+		injector.freeze().writeResolvedBinds(writer);
+		FrozenInjector frozen = FrozenInjector.readResolvedBinds(new StringReader(writer.toString()),
+				InjectorTest.class.getClassLoader(), new InjectorListener());
+		
+		TestSimpleInject tsi = frozen.newInstance(TestSimpleInject.class);
+		Assert.assertEquals(tsi.component.doSmth(), "ComponentA::doSmth");
+		
+		ConstructorInjectHolder holder = new ConstructorInjectHolder();
+		frozen.inject(holder);
+		Assert.assertEquals(holder.inject.namedComponent.doSmth(), "ComponentB::doSmth");
+		Assert.assertSame(holder.inject.component, tsi.component);
+		
+		DeferredInject di = new DeferredInject();
+		frozen.inject(di);
+		Assert.assertSame(di.lazy.get(), tsi.component);
+		
+		MultiInject mi = new MultiInject();
+		frozen.inject(mi);
+		Assert.assertEquals(mi.list.size(), 2);
+		Assert.assertSame(mi.array[0], tsi.component);
+		
+		MapInject mapInject = new MapInject();
+		frozen.inject(mapInject);
+		Assert.assertEquals(mapInject.byName.get("TestInject").doSmth(), "ComponentB::doSmth");
+	}
+	
+	@Test
+	public void testResolvedModules() throws Exception {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(ResolvedModule.class, ResolvedModuleInject.class));
+		
+		StringWriter writer = new StringWriter();
+		injector.freeze().writeResolvedBinds(writer);
+		FrozenInjector frozen = FrozenInjector.readResolvedBinds(new StringReader(writer.toString()),
+				InjectorTest.class.getClassLoader(), new InjectorListener());
+		
+		ResolvedModule.created = 0;
+		ResolvedModuleInject.staticModule = null;
+		ResolvedModuleInject expected = injector.newInstance(ResolvedModuleInject.class);
+		injector.injectStatics();
+		assertSameModule(expected);
+		
+		ResolvedModule.created = 0;
+		ResolvedModuleInject.staticModule = null;
+		ResolvedModuleInject loaded = frozen.newInstance(ResolvedModuleInject.class);
+		frozen.injectStatics();
+		assertSameModule(loaded);
+		Assert.assertNotSame(loaded.module, expected.module);
+	}
+	
+	private static void assertSameModule(ResolvedModuleInject inject) {
+		Assert.assertEquals(ResolvedModule.created, 1);
+		Assert.assertSame(inject.first.module, inject.module);
+		Assert.assertSame(inject.second.module, inject.module);
+		Assert.assertSame(ResolvedModuleInject.staticModule, inject.module);
+	}
+	
+	@Singleton
+	public static class ResolvedModule {
+		static int created;
+		
+		public ResolvedModule() {
+			created++;
+		}
+		
+		@NamedScope("resolvedFirst")
+		public ResolvedProduct first() {
+			return new ResolvedProduct(this);
+		}
+		
+		@NamedScope("resolvedSecond")
+		public ResolvedProduct second() {
+			return new ResolvedProduct(this);
+		}
+	}
+	
+	public static class ResolvedProduct {
+		final ResolvedModule module;
+		
+		public ResolvedProduct(ResolvedModule module) {
+			this.module = module;
+		}
+	}
+	
+	public static class ResolvedModuleInject {
+		@Inject static ResolvedModule staticModule;
+		@Inject ResolvedModule module;
+		@Named("resolvedFirst") @Inject ResolvedProduct first;
+		@Named("resolvedSecond") @Inject ResolvedProduct second;
+	}
+	
+	@Test
+	public void testLifecycle() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(LifecycleStore.class, LifecycleService.class, LifecycleClient.class));
+		
+		List<String> events = LifecycleStore.events;
+		events.clear();
+		LifecycleClient client = injector.newInstance(LifecycleClient.class);
+		Assert.assertSame(client.service, client.sameService);
+		Assert.assertTrue(client.service.isStoreStarted);
+		Assert.assertEquals(events, Arrays.asList("store.start", "service.start"));
+		
+		injector.newInstance(LifecycleClient.class);
+		Assert.assertEquals(events.size(), 2); //singletons are injected once
+		
+		String store = getTypeConfig(injector.getReflectionConfig().toJson(), LifecycleStore.class);
+		Assert.assertTrue(store.contains("{\"name\":\"start\",\"parameterTypes\":[]}"));
+		Assert.assertTrue(store.contains("{\"name\":\"stop\",\"parameterTypes\":[]}"));
+		
+		Assert.assertTrue(injector.close(ForkJoinPool.commonPool(), 10, TimeUnit.SECONDS));
+		Assert.assertEquals(events, Arrays.asList("store.start", "service.start", "service.stop", "store.stop"));
+		Assert.assertNotSame(injector.newInstance(LifecycleClient.class).service, client.service);
+	}
+	
+	/**
+	 * @return line of reflect-config of class
+	 */
+	private static String getTypeConfig(String json, Class<?> clazz) {
+		String prefix = "{\"name\":\"" + clazz.getName() + "\"";
+		String[] lines = json.split("\n");
+		for(int i = 0; i < lines.length; i++) {
+			if(lines[i].startsWith(prefix)) {
+				return lines[i];
+			}
+		}
+		throw new AssertionError("No reflection config of " + clazz.getName());
+	}
+	
+	@Singleton
+	public static class LifecycleStore {
+		static final List<String> events = Collections.synchronizedList(new ArrayList<>());
+		boolean isStarted;
+		
+		@PostConstruct
+		void start() {
+			isStarted = true;
+			events.add("store.start");
+		}
+		
+		@PreDestroy
+		void stop() {
+			isStarted = false;
+			events.add("store.stop");
+		}
+	}
+	
+	@Singleton
+	public static class LifecycleService {
+		@Inject LifecycleStore store;
+		boolean isStoreStarted;
+		
+		@PostConstruct
+		void start() {
+			isStoreStarted = store.isStarted;
+			LifecycleStore.events.add("service.start");
+		}
+		
+		@PreDestroy
+		void stop() {
+			Assert.assertTrue(store.isStarted);
+			LifecycleStore.events.add("service.stop");
+		}
+	}
+	
+	public static class LifecycleClient {
+		@Inject LifecycleService service;
+		@Inject LifecycleService sameService;
+	}
+	
+	@Test
+	public void testNewInstances() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentA.class, ComponentB.class, TestSimpleInject.class,
+				ConstructorInject.class, LifecycleStore.class, LifecycleService.class, LifecycleClient.class));
+		
+		List<TestSimpleInject> simple = injector.newInstances(TestSimpleInject.class, 100);
+		Assert.assertEquals(simple.size(), 100);
+		Assert.assertNotSame(simple.get(0), simple.get(99));
+		for(int i = 0; i < simple.size(); i++) {
+			Assert.assertSame(simple.get(i).component, simple.get(0).component);
+		}
+		
+		List<ConstructorInject> created = injector.newInstances(ConstructorInject.class, 10_000, true);
+		for(int i = 0; i < created.size(); i++) {
+			Assert.assertEquals(created.get(i).namedComponent.doSmth(), "ComponentB::doSmth");
+		}
+		
+		LifecycleStore.events.clear();
+		List<LifecycleClient> clients = injector.newInstances(LifecycleClient::new, 1000, true);
+		Assert.assertEquals(LifecycleStore.events, Arrays.asList("store.start", "service.start"));
+		for(int i = 0; i < clients.size(); i++) {
+			Assert.assertTrue(clients.get(i).service.isStoreStarted);
+		}
+	}
+	
+	@Test
+	public void testSharedClassMeta() {
+		ClassMeta meta = ClassMeta.of(ComponentWrap.class);
+		Assert.assertSame(ClassMeta.of(ComponentWrap.class), meta);
+		Assert.assertEquals(meta.getScopedCount(), 1); //only class has scope
+		Assert.assertSame(meta.getScopedMember(0), ComponentWrap.class);
+		Assert.assertEquals(meta.getInjectFields().length, 1);
+		
+		for(int i = 0; i < 2; i++) { //each injector binds from same metadata
+			Injector injector = new Injector();
+			injector.setListener(new InjectorListener());
+			injector.autoBind(Arrays.asList(ISharedComponent.class, ComponentB.class, ComponentWrap.class, SpecifiedInject.class));
+			Assert.assertEquals(injector.newInstance(SpecifiedInject.class).component.doSmth(), "ComponentB::doSmth && ComponentC::doSmth");
+		}
+	}
+	
+	@Test
+	public void testUnitScope() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(UnitState.class, UnitHandler.class));
+		
+		UnitState first;
+		try(ScopeContext scope = ScopeContext.open()) {
+			UnitHandler handler1 = injector.newInstance(UnitHandler.class);
+			UnitHandler handler2 = injector.newInstance(UnitHandler.class);
+			Assert.assertSame(handler1.state, handler2.state);
+			Assert.assertSame(handler1.state, handler1.sameState);
+			Assert.assertEquals(scope.size(), 1);
+			first = handler1.state;
+			
+			try(ScopeContext nested = ScopeContext.open()) {
+				Assert.assertSame(ScopeContext.current(), nested);
+				Assert.assertNotSame(injector.newInstance(UnitHandler.class).state, first);
+			}
+			Assert.assertSame(ScopeContext.current(), scope);
+			Assert.assertSame(injector.newInstance(UnitHandler.class).state, first);
+		}
+		Assert.assertTrue(first.isReleased);
+		Assert.assertNull(ScopeContext.current());
+		
+		injector.setListener(new InjectorListenerStub()); //no open scope
+		Assert.assertNull(injector.newInstance(UnitHandler.class).state);
+	}
+	
+	@Test
+	public void testUnitScopeTable() {
+		final Object[] keys = new Object[100];
+		try(ScopeContext scope = ScopeContext.open()) {
+			for(int i = 0; i < keys.length; i++) {
+				keys[i] = new Object();
+				scope.put(keys[i], i);
+			}
+			scope.put(keys[0], -1);
+			
+			Assert.assertEquals(scope.size(), keys.length);
+			Assert.assertNull(scope.get(new Object()));
+			Assert.assertEquals(scope.get(keys[0]), -1);
+			for(int i = 1; i < keys.length; i++) {
+				Assert.assertEquals(scope.get(keys[i]), i);
+			}
+		}
+	}
+	
+	@UnitScope
+	public static class UnitState {
+		boolean isReleased;
+		
+		@PreDestroy
+		void release() {
+			isReleased = true;
+		}
+	}
+	
+	public static class UnitHandler {
+		@Inject UnitState state;
+		@Inject UnitState sameState;
+	}
+	
+	@Test
+	public void testPrefetch() throws Exception {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(PrefetchTarget.class, PrefetchHolder.class));
+		Assert.assertFalse(PrefetchProbe.isInitialized);
+		
+		injector.prefetch(true).get(10, TimeUnit.SECONDS);
+		Assert.assertTrue(PrefetchProbe.isInitialized);
+		Assert.assertEquals(PrefetchProbe.created, 1);
+		
+		Assert.assertNotNull(injector.newInstance(PrefetchHolder.class).target);
+		Assert.assertEquals(PrefetchProbe.created, 2);
+	}
+	
+	public static class PrefetchProbe {
+		static volatile boolean isInitialized;
+		static volatile int created;
+	}
+	
+	public static class PrefetchTarget {
+		static {
+			PrefetchProbe.isInitialized = true;
+		}
+		
+		public PrefetchTarget() {
+			PrefetchProbe.created++;
+		}
+	}
+	
+	public static class PrefetchHolder {
+		@Inject PrefetchTarget target;
+	}
+	
+	@Test
+	public void testPrimitiveInject() {
+		Injector injector = new Injector();
+		injector.setListener(new InjectorListener());
+		injector.autoBind(Arrays.asList(PrimitiveConfig.class, PrimitiveInject.class));
+		
+		PrimitiveConfig.rate = 0.5;
+		PrimitiveInject pi = injector.newInstance(PrimitiveInject.class);
+		Assert.assertEquals(pi.port, 7777);
+		Assert.assertEquals(pi.rate, 0.5, 0);
+		Assert.assertEquals(pi.limit, 1L << 40);
+		Assert.assertTrue(pi.isEnabled);
+		
+		PrimitiveConfig.rate = 0.75; //not final source is read on each inject
+		Assert.assertEquals(injector.newInstance(PrimitiveInject.class).rate, 0.75, 0);
+		
+		InjectStats stats = new InjectStats();
+		injector.inject(new PrimitiveInject(), stats);
+		Assert.assertEquals(stats.getInstances(), 1); //values are not scheduled for inject
+		
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+		
+		for(int i = 0; i < 100_000; i++) { //warm up jit
+			injector.inject(pi);
+		}
+		
+		final long threadId = Thread.currentThread().getId();
+		final int count = 100_000;
+		long before = bean.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < count; i++) {
+			injector.inject(pi);
+		}
+		long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+		
+		Assert.assertEquals("Allocated bytes per primitive inject: " + (double) allocated / count, 0, allocated / count);
+	}
+	
+	public static class PrimitiveConfig {
+		@NamedScope("port") static final int PORT = 7777;
+		@NamedScope("rate") static double rate;
+		
+		@NamedScope("limit")
+		static long limit() {
+			return 1L << 40;
+		}
+		
+		@NamedScope("enabled")
+		static boolean isEnabled() {
+			return true;
+		}
+	}
+	
+	public static class PrimitiveInject {
+		@Named("port") @Inject int port;
+		@Named("rate") @Inject double rate;
+		@Named("limit") @Inject long limit;
+		@Named("enabled") @Inject boolean isEnabled;
+	}
 }